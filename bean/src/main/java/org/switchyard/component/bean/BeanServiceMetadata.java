@@ -22,13 +22,16 @@ package org.switchyard.component.bean;
 import org.switchyard.Exchange;
 
 import java.lang.reflect.Method;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Bean Service meta data.
  * <p/>
- * Provides access to Bean Service operation invocation information.
+ * Provides access to Bean Service operation invocation information.  Operation
+ * names are resolved to bean methods once, when the metadata is created.
  *
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  */
@@ -39,22 +42,28 @@ public class BeanServiceMetadata {
      */
     private Class<? extends Object> _serviceClass;
     /**
-     * List of service methods/operations.
+     * Service method/operation invokers, keyed by operation name.
      */
-    private List<Method> _serviceMethods = new ArrayList<Method>();
+    private Map<String, OperationInvoker> _serviceMethods;
 
     /**
      * Public constructor.
      *
      * @param serviceClass The service bean class.
+     * @throws RuntimeException An operation name resolves to more than one bean method.
      */
     public BeanServiceMetadata(Class<? extends Object> serviceClass) {
-        Method[] serviceMethods = serviceClass.getMethods();
-        for (Method serviceMethod : serviceMethods) {
+        Map<String, OperationInvoker> serviceMethods = new HashMap<String, OperationInvoker>();
+        for (Method serviceMethod : serviceClass.getMethods()) {
             if (serviceMethod.getDeclaringClass() != Object.class) {
-                this._serviceMethods.add(serviceMethod);
+                OperationInvoker overloaded = serviceMethods.put(serviceMethod.getName(), new OperationInvoker(serviceMethod));
+                if (overloaded != null) {
+                    // Operation name must resolve to exactly one bean method...
+                    throw new RuntimeException("Operation name '" + serviceMethod.getName() + "' must resolve to exactly one bean method on bean type '" + serviceClass.getName() + "'.  Overloaded bean methods are not supported.");
+                }
             }
         }
+        this._serviceMethods = Collections.unmodifiableMap(serviceMethods);
         this._serviceClass = serviceClass;
     }
 
@@ -79,15 +88,14 @@ public class BeanServiceMetadata {
         String operationName = exchange.getContract().getServiceOperation().getName();
 
         if (operationName != null) {
-            List<Method> candidateMethods = getCandidateMethods(operationName);
+            OperationInvoker operationInvoker = _serviceMethods.get(operationName);
 
             // Operation name must resolve to exactly one bean method...
-            if (candidateMethods.size() != 1) {
+            if (operationInvoker == null) {
                 throw new BeanComponentException("Operation name '" + operationName + "' must resolve to exactly one bean method on bean type '" + _serviceClass.getName() + "'.");
             }
 
-            Method operationMethod = candidateMethods.get(0);
-            return new Invocation(operationMethod, exchange);
+            return new Invocation(operationInvoker, exchange);
         } else {
             throw new BeanComponentException("Operation name not specified on exchange.");
         }
@@ -98,18 +106,16 @@ public class BeanServiceMetadata {
      * operation name.
      *
      * @param operationName The operation name.
-     * @return The list of possible matching operation methods.
+     * @return The list of possible matching operation methods.  Holds at most one method,
+     * as overloaded operations are rejected when the metadata is created.
      */
     public List<Method> getCandidateMethods(String operationName) {
-        List<Method> candidateMethods = new ArrayList<Method>();
+        OperationInvoker serviceMethod = _serviceMethods.get(operationName);
 
-        for (Method serviceMethod : _serviceMethods) {
-            if (serviceMethod.getName().equals(operationName)) {
-                candidateMethods.add(serviceMethod);
-            }
+        if (serviceMethod == null) {
+            return Collections.emptyList();
         }
-
-        return candidateMethods;
+        return Collections.singletonList(serviceMethod.getMethod());
     }
 
 }
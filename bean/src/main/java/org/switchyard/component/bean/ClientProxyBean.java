@@ -26,10 +26,11 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.context.spi.CreationalContext;
@@ -69,6 +70,11 @@ public class ClientProxyBean implements Bean {
      */
     private ServiceReference _service;
 
+    /**
+     * Call sites of the proxy interface methods, bound to the target service.
+     */
+    private volatile Map<Method, OperationCallSite> _callSites = Collections.emptyMap();
+
     /**
      * The bean proxy Interface {@link Class} of the bean being proxied.  This class
      * must be one of the {@link org.switchyard.component.bean.Service @Service}
@@ -135,6 +141,15 @@ public class ClientProxyBean implements Bean {
      * @param service The target service.
      */
     public void setService(ServiceReference service) {
+        Map<Method, OperationCallSite> callSites = new HashMap<Method, OperationCallSite>();
+
+        for (Method method : _serviceInterface.getMethods()) {
+            ServiceOperation operation = service.getInterface().getOperation(method.getName());
+            if (operation != null) {
+                callSites.put(method, new OperationCallSite(service, operation, method));
+            }
+        }
+        this._callSites = Collections.unmodifiableMap(callSites);
         this._service = service;
     }
 
@@ -268,29 +283,24 @@ public class ClientProxyBean implements Bean {
     private class ClientProxyInvocationHandler implements InvocationHandler {
 
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-            if (_service == null) {
+            ServiceReference service = _service;
+            if (service == null) {
                 throw new BeanComponentException("A service reference to service '" + _serviceQName + "' is not bound into "
                         + "this client proxy instance.  A reference configuration to the service may be required in the application configuration.");
             }
 
-            if (method.getReturnType() != null && !Void.TYPE.isAssignableFrom(method.getReturnType())) {
-                final BlockingQueue<Exchange> responseQueue = new ArrayBlockingQueue<Exchange>(1);
-
-                ExchangeHandler responseExchangeHandler = new ExchangeHandler() {
-                    public void handleMessage(Exchange exchange) throws HandlerException {
-                        responseQueue.offer(exchange);
-                    }
-
-                    public void handleFault(Exchange exchange) {
-                        responseQueue.offer(exchange);
-                    }
-                };
+            OperationCallSite callSite = _callSites.get(method);
+            if (callSite == null || callSite._service != service) {
+                callSite = createCallSite(service, method);
+            }
 
+            if (callSite._inOut) {
+                ResponseHandler responseExchangeHandler = new ResponseHandler();
 
-                Exchange exchangeIn = createExchange(_service, method, responseExchangeHandler);
+                Exchange exchangeIn = service.createExchange(callSite._contract, responseExchangeHandler);
                 exchangeIn.send(exchangeIn.createMessage().setContent(args));
 
-                Exchange exchangeOut = responseQueue.take();
+                Exchange exchangeOut = responseExchangeHandler.take();
                 if (exchangeOut.getState() == ExchangeState.OK) {
                     return exchangeOut.getMessage().getContent();
                 } else {
@@ -312,14 +322,14 @@ public class ClientProxyBean implements Bean {
                     }
                 }
             } else {
-                Exchange exchange = createExchange(_service, method, null);
+                Exchange exchange = service.createExchange(callSite._contract, null);
                 exchange.send(exchange.createMessage().setContent(args));
 
                 return null;
             }
         }
 
-        private Exchange createExchange(ServiceReference service, Method method, ExchangeHandler responseExchangeHandler) throws BeanComponentException {
+        private OperationCallSite createCallSite(ServiceReference service, Method method) throws BeanComponentException {
             String operationName = method.getName();
             ServiceOperation operation = service.getInterface().getOperation(operationName);
 
@@ -327,8 +337,83 @@ public class ClientProxyBean implements Bean {
                 throw new BeanComponentException("Bean Component invocation failure.  Operation '" + operationName + "' is not defined on Service '" + _serviceQName + "'.");
             }
 
-            return service.createExchange(new BaseExchangeContract(operation), responseExchangeHandler);
+            return new OperationCallSite(service, operation, method);
+        }
+
+    }
+
+    /**
+     * Invocation details of a proxy interface method, worked out once per target service.
+     */
+    private static final class OperationCallSite {
+
+        /**
+         * The target service reference.
+         */
+        private final ServiceReference _service;
+        /**
+         * The exchange contract of the operation, shared by all invocations.
+         */
+        private final BaseExchangeContract _contract;
+        /**
+         * True if the method returns a value, so the caller waits for the response.
+         */
+        private final boolean _inOut;
+
+        private OperationCallSite(ServiceReference service, ServiceOperation operation, Method method) {
+            this._service = service;
+            this._contract = new BaseExchangeContract(operation);
+            this._inOut = (method.getReturnType() != null && !Void.TYPE.isAssignableFrom(method.getReturnType()));
+        }
+    }
+
+    /**
+     * Holds the response {@link Exchange} of a single invocation.
+     * <p/>
+     * The response is often delivered on the calling thread, before the request send returns,
+     * in which case the caller does not block at all.
+     */
+    private static final class ResponseHandler implements ExchangeHandler {
+
+        /**
+         * The calling thread, woken up when the response is delivered.
+         */
+        private final Thread _caller = Thread.currentThread();
+        /**
+         * The response exchange.
+         */
+        private volatile Exchange _response;
+
+        public void handleMessage(Exchange exchange) throws HandlerException {
+            complete(exchange);
         }
 
+        public void handleFault(Exchange exchange) {
+            complete(exchange);
+        }
+
+        private void complete(Exchange exchange) {
+            if (_response == null) {
+                _response = exchange;
+                LockSupport.unpark(_caller);
+            }
+        }
+
+        /**
+         * Wait for the response.
+         * @return The response exchange.
+         * @throws InterruptedException The calling thread was interrupted while waiting.
+         */
+        private Exchange take() throws InterruptedException {
+            Exchange response = _response;
+            while (response == null) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                response = _response;
+            }
+            return response;
+        }
     }
 }
@@ -21,6 +21,7 @@ package org.switchyard.component.bean;
 
 import org.switchyard.Exchange;
 
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
 /**
@@ -34,6 +35,10 @@ public class Invocation {
      * The method/operation being invoked.
      */
     private Method _method;
+    /**
+     * The invoker bound to the method/operation.
+     */
+    private OperationInvoker _invoker;
     /**
      * The exchange instance.
      */
@@ -47,23 +52,15 @@ public class Invocation {
     /**
      * Constructor.
      *
-     * @param method The method/operation being invoked.
+     * @param invoker The invoker bound to the method/operation being invoked.
      * @param exchange The exchange instance.
-     * @throws BeanComponentException Unsupported method structure, or type mismatch.
+     * @throws BeanComponentException Type mismatch.
      */
-    Invocation(Method method, Exchange exchange) throws BeanComponentException {
-        this._method = method;
+    Invocation(OperationInvoker invoker, Exchange exchange) throws BeanComponentException {
+        this._method = invoker.getMethod();
+        this._invoker = invoker;
         this._exchange = exchange;
-        this._args = castArg(method, exchange.getMessage().getContent());
-        assertOK();
-    }
-
-    /**
-     * Assert that the exchange payload type(s) and the bean method
-     * argument type(s) match.
-     */
-    private void assertOK() throws BeanComponentException {
-        assertMethodStructureSupported();
+        this._args = castArg(invoker.getParameterType(), exchange.getMessage().getContent());
         assertTypesMatch();
     }
 
@@ -85,10 +82,23 @@ public class Invocation {
         return _method;
     }
 
-    private static Object[] castArg(Method method, Object content) {
-        if (method.getParameterTypes().length == 1 && content != null) {
-            if (content.getClass().isArray()) {
-                return (Object[].class).cast(content);
+    /**
+     * Invoke the method/operation on a bean.
+     *
+     * @param bean The bean instance.
+     * @return The operation result.
+     * @throws IllegalAccessException The method is not accessible.
+     * @throws InvocationTargetException The operation threw an exception.
+     */
+    public Object invoke(Object bean) throws IllegalAccessException, InvocationTargetException {
+        return _invoker.invoke(bean, _args);
+    }
+
+    private static Object[] castArg(Class<?> parameterType, Object content) {
+        if (parameterType != null && content != null) {
+            if (content instanceof Object[]) {
+                // Passed as is, e.g. the args of a client proxy invocation...
+                return (Object[]) content;
             } else {
                 return new Object[]{content};
             }
@@ -96,28 +106,24 @@ public class Invocation {
         return null;
     }
 
-    private void assertMethodStructureSupported() throws BeanComponentException {
-        Class<?>[] parameterTypes = _method.getParameterTypes();
-
-        // TODO: Only supports 0 or 1 arg operations for now...
-        if (parameterTypes.length > 1) {
-            throw new BeanComponentException("Bean service operation '" + operationName() + "' has more than 1 argument.  Bean component currently only supports single argument operations.");
-        }
-    }
-
+    /**
+     * Assert that the exchange payload type(s) and the bean method
+     * argument type(s) match.  The method structure is checked when
+     * the {@link OperationInvoker} is created.
+     */
     private void assertTypesMatch() throws BeanComponentException {
+        Class<?> argType = _invoker.getParameterType();
+
         if (_args == null) {
-            if (_method.getParameterTypes().length != 0) {
+            if (argType != null) {
                 throw new BeanComponentException("Bean service operation '" + operationName() + "' requires a single argument.  Exchange payload specifies no payload.");
             }
         } else {
-            if (_args.length > 1) {
+            if (_args.length != 1) {
                 throw new BeanComponentException("Bean service operation '" + operationName() + "' only supports a single argument.  Exchange payload specifies " + _args.length + " args.");
             }
 
             if (_args[0] != null) {
-                Class<?> argType = _method.getParameterTypes()[0];
-
                 if (!argType.isInstance(_args[0])) {
                     throw new BeanComponentException("Bean service operation '" + operationName() + "' requires a payload type of '" + argType.getName() + "'.  Actual payload type is '" + _args[0].getClass().getName() + "'.  You must define and register a Transformer.");
                 }
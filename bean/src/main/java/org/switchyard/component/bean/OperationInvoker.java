@@ -0,0 +1,97 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.bean;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Bean service operation invoker.
+ * <p/>
+ * Bound to the operation method when the {@link BeanServiceMetadata} is created, so the
+ * method is made accessible and its structure is checked once rather than on every
+ * invocation.
+ */
+final class OperationInvoker {
+
+    /**
+     * The method/operation being invoked.
+     */
+    private final Method _method;
+    /**
+     * The operation argument type, or null if the operation takes no argument.
+     */
+    private final Class<?> _parameterType;
+
+    /**
+     * Constructor.
+     *
+     * @param method The method/operation being invoked.
+     * @throws RuntimeException The method has more than one argument.
+     */
+    OperationInvoker(Method method) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+
+        // TODO: Only supports 0 or 1 arg operations for now...
+        if (parameterTypes.length > 1) {
+            throw new RuntimeException("Bean service operation '" + method.getDeclaringClass().getName() + "#" + method.getName() + "' has more than 1 argument.  Bean component currently only supports single argument operations.");
+        }
+
+        this._method = method;
+        this._parameterType = (parameterTypes.length == 1 ? parameterTypes[0] : null);
+        try {
+            method.setAccessible(true);
+        } catch (SecurityException e) {
+            // Not permitted, so Method.invoke applies the language access checks, and an operation
+            // declared on a non-public type fails with an IllegalAccessException...
+        }
+    }
+
+    /**
+     * Get the method/operation being invoked.
+     *
+     * @return The method/operation being invoked.
+     */
+    Method getMethod() {
+        return _method;
+    }
+
+    /**
+     * Get the operation argument type.
+     *
+     * @return The argument type, or null if the operation takes no argument.
+     */
+    Class<?> getParameterType() {
+        return _parameterType;
+    }
+
+    /**
+     * Invoke the operation on a bean.
+     *
+     * @param bean The bean instance.
+     * @param args The invocation arguments.
+     * @return The operation result.
+     * @throws IllegalAccessException The method is not accessible.
+     * @throws InvocationTargetException The operation threw an exception.
+     */
+    Object invoke(Object bean, Object[] args) throws IllegalAccessException, InvocationTargetException {
+        return _method.invoke(bean, args);
+    }
+}
@@ -98,15 +98,22 @@ public class ServiceProxyHandler implements ExchangeHandler {
                 if (exchange.getContract().getServiceOperation().getExchangePattern() == ExchangePattern.IN_OUT) {
                     Object responseObject;
 
-                    ClassLoader tccl = Thread.currentThread().getContextClassLoader();
-                    try {
-                        // TODO: Come back an fix this... if the TCCL is not that of the deployment, the weld bean proxies barf.
-                        // If the invocation starts from the SOAP Gateway, we get the same TCCL all the way, even after a redeploy.
-                        // See https://issues.jboss.org/browse/SWITCHYARD-148
-                        Thread.currentThread().setContextClassLoader(_beanDeploymentMetaData.getDeploymentClassLoader());
-                        responseObject = invocation.getMethod().invoke(_serviceBean, invocation.getArgs());
-                    } finally {
-                        Thread.currentThread().setContextClassLoader(tccl);
+                    // TODO: Come back an fix this... if the TCCL is not that of the deployment, the weld bean proxies barf.
+                    // If the invocation starts from the SOAP Gateway, we get the same TCCL all the way, even after a redeploy.
+                    // See https://issues.jboss.org/browse/SWITCHYARD-148
+                    ClassLoader deploymentClassLoader = _beanDeploymentMetaData.getDeploymentClassLoader();
+                    Thread thread = Thread.currentThread();
+                    ClassLoader tccl = thread.getContextClassLoader();
+                    if (tccl == deploymentClassLoader) {
+                        // Already the deployment TCCL, e.g. a call from another bean of the deployment...
+                        responseObject = invocation.invoke(_serviceBean);
+                    } else {
+                        try {
+                            thread.setContextClassLoader(deploymentClassLoader);
+                            responseObject = invocation.invoke(_serviceBean);
+                        } finally {
+                            thread.setContextClassLoader(tccl);
+                        }
                     }
 
                     Message message = exchange.createMessage();
@@ -114,7 +121,7 @@ public class ServiceProxyHandler implements ExchangeHandler {
                     message.setContent(responseObject);
                     exchange.send(message);
                 } else {
-                    invocation.getMethod().invoke(_serviceBean, invocation.getArgs());
+                    invocation.invoke(_serviceBean);
                 }
             } catch (IllegalAccessException e) {
                 throw new BeanComponentException("Cannot invoke operation '" + invocation.getMethod().getName() + "' on bean component '" + _serviceBean.getClass().getName() + "'.", e);
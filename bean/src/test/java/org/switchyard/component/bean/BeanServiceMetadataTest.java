@@ -0,0 +1,67 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.bean;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for BeanServiceMetadata.
+ */
+public class BeanServiceMetadataTest {
+
+    @Test
+    public void test_CandidateMethods() throws Exception {
+        BeanServiceMetadata metadata = new BeanServiceMetadata(Echo.class);
+
+        List<Method> candidates = metadata.getCandidateMethods("echo");
+        Assert.assertEquals(1, candidates.size());
+        Assert.assertEquals(Echo.class.getMethod("echo", String.class), candidates.get(0));
+        Assert.assertTrue(metadata.getCandidateMethods("c").isEmpty());
+        // Object methods are not operations
+        Assert.assertTrue(metadata.getCandidateMethods("toString").isEmpty());
+    }
+
+    @Test
+    public void test_Overloaded_Fail() {
+        try {
+            new BeanServiceMetadata(Y.class);
+            Assert.fail("Expected RuntimeException");
+        } catch (RuntimeException e) {
+            Assert.assertEquals("Operation name 'a' must resolve to exactly one bean method on bean type '" + Y.class.getName() + "'.  Overloaded bean methods are not supported.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void test_Invoker_Non_Public_Interface() throws Exception {
+        Method method = new BeanServiceMetadata(Echo.class).getCandidateMethods("echo").get(0);
+        OperationInvoker invoker = new OperationInvoker(method);
+
+        Assert.assertEquals("hello", invoker.invoke(new EchoBean(), new Object[]{"hello"}));
+    }
+
+    private interface Y {
+        void a(String in);
+        void a(Integer in);
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.bean;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.enterprise.inject.spi.BeanManager;
+import javax.xml.namespace.QName;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.switchyard.Exchange;
+import org.switchyard.ExchangeHandler;
+import org.switchyard.ExchangeState;
+import org.switchyard.Message;
+import org.switchyard.ServiceReference;
+import org.switchyard.component.bean.deploy.BeanDeploymentMetaData;
+import org.switchyard.metadata.ServiceInterface;
+import org.switchyard.metadata.ServiceOperation;
+
+/**
+ * Tests for ClientProxyBean.
+ */
+public class ClientProxyBeanTest {
+
+    private static final long TIMEOUT = 10000;
+
+    @Test
+    public void test_Reply_On_Calling_Thread() throws Exception {
+        ClientProxyBean proxyBean = newProxyBean();
+        FakeService service = new FakeService(Reply.NOW);
+        proxyBean.setService(service.getReference());
+
+        Assert.assertEquals("hello", getGreeter(proxyBean).greet("hello"));
+        Assert.assertEquals(1, service.getExchangeCount());
+    }
+
+    @Test
+    public void test_Reply_On_Other_Thread() throws Exception {
+        ClientProxyBean proxyBean = newProxyBean();
+        proxyBean.setService(new FakeService(Reply.LATER).getReference());
+
+        Assert.assertEquals("hello", getGreeter(proxyBean).greet("hello"));
+    }
+
+    @Test
+    public void test_Interrupted_While_Waiting() throws Exception {
+        ClientProxyBean proxyBean = newProxyBean();
+        proxyBean.setService(new FakeService(Reply.NEVER).getReference());
+        final Greeter greeter = getGreeter(proxyBean);
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+
+        Thread caller = new Thread() {
+            public void run() {
+                try {
+                    greeter.greet("hello");
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            }
+        };
+        caller.start();
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (caller.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        caller.interrupt();
+        caller.join(TIMEOUT);
+
+        Assert.assertFalse("Caller still waiting", caller.isAlive());
+        Assert.assertEquals(1, failures.size());
+        Assert.assertTrue(failures.get(0) instanceof UndeclaredThrowableException);
+        Assert.assertTrue(failures.get(0).getCause() instanceof InterruptedException);
+    }
+
+    @Test
+    public void test_One_Way() throws Exception {
+        ClientProxyBean proxyBean = newProxyBean();
+        FakeService service = new FakeService(Reply.NEVER);
+        proxyBean.setService(service.getReference());
+
+        getGreeter(proxyBean).notify("hello");
+        Assert.assertEquals(1, service.getExchangeCount());
+        Assert.assertTrue(service.getHandlers().contains(null));
+    }
+
+    @Test
+    public void test_Undefined_Operation_Fail() throws Exception {
+        ClientProxyBean proxyBean = newProxyBean();
+        FakeService service = new FakeService(Reply.NOW, "greet");
+        proxyBean.setService(service.getReference());
+
+        try {
+            getGreeter(proxyBean).notify("hello");
+            Assert.fail("Expected BeanComponentException");
+        } catch (UndeclaredThrowableException e) {
+            Assert.assertTrue(e.getCause() instanceof BeanComponentException);
+            Assert.assertEquals("Bean Component invocation failure.  Operation 'notify' is not defined on Service 'Greeter'.", e.getCause().getMessage());
+        }
+        Assert.assertEquals(0, service.getExchangeCount());
+        // Defined operations are unaffected...
+        Assert.assertEquals("hello", getGreeter(proxyBean).greet("hello"));
+    }
+
+    @Test
+    public void test_Rebind_Service() throws Exception {
+        ClientProxyBean proxyBean = newProxyBean();
+        FakeService first = new FakeService(Reply.NOW);
+        FakeService second = new FakeService(Reply.NOW);
+        Greeter greeter = getGreeter(proxyBean);
+
+        proxyBean.setService(first.getReference());
+        Assert.assertEquals("hello", greeter.greet("hello"));
+        proxyBean.setService(second.getReference());
+        Assert.assertEquals("hello", greeter.greet("hello"));
+        greeter.notify("hello");
+
+        Assert.assertEquals(1, first.getExchangeCount());
+        Assert.assertEquals(2, second.getExchangeCount());
+    }
+
+    private static ClientProxyBean newProxyBean() throws Exception {
+        // Bound deployments live in JNDI, which is not needed to proxy a service...
+        Constructor<BeanDeploymentMetaData> constructor = BeanDeploymentMetaData.class.getDeclaredConstructor(ClassLoader.class, BeanManager.class);
+        constructor.setAccessible(true);
+        BeanDeploymentMetaData deploymentMetaData = constructor.newInstance(ClientProxyBeanTest.class.getClassLoader(), null);
+
+        return new ClientProxyBean(new QName("Greeter"), Greeter.class, null, deploymentMetaData);
+    }
+
+    private static Greeter getGreeter(ClientProxyBean proxyBean) {
+        return (Greeter) proxyBean.create(null);
+    }
+
+    private static <T> T newProxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(ClientProxyBeanTest.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    interface Greeter {
+        String greet(String name);
+        void notify(String event);
+    }
+
+    private enum Reply {
+        NOW, LATER, NEVER
+    }
+
+    /**
+     * A service replying with the argument it is sent.
+     */
+    private static class FakeService implements InvocationHandler {
+
+        private final Reply _reply;
+        private final List<String> _operationNames;
+        private final List<ExchangeHandler> _handlers = Collections.synchronizedList(new ArrayList<ExchangeHandler>());
+        private final ServiceReference _reference = newProxy(ServiceReference.class, this);
+
+        FakeService(Reply reply, String... operationNames) {
+            this._reply = reply;
+            this._operationNames = (operationNames.length > 0 ? Arrays.asList(operationNames) : Arrays.asList("greet", "notify"));
+        }
+
+        ServiceReference getReference() {
+            return _reference;
+        }
+
+        int getExchangeCount() {
+            return _handlers.size();
+        }
+
+        List<ExchangeHandler> getHandlers() {
+            return _handlers;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("getName")) {
+                return new QName("Greeter");
+            } else if (method.getName().equals("getInterface")) {
+                return newProxy(ServiceInterface.class, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getOperation") && _operationNames.contains(args[0])) {
+                            return newProxy(ServiceOperation.class, new InvocationHandler() {
+                                public Object invoke(Object proxy, Method method, Object[] args) {
+                                    return null;
+                                }
+                            });
+                        }
+                        return null;
+                    }
+                });
+            } else if (method.getName().equals("createExchange")) {
+                ExchangeHandler handler = (args.length > 1 ? (ExchangeHandler) args[1] : null);
+                _handlers.add(handler);
+                return newExchange(handler);
+            }
+            return null;
+        }
+
+        private Exchange newExchange(final ExchangeHandler handler) {
+            final Object[] content = new Object[1];
+            final Message message = newProxy(Message.class, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if (method.getName().equals("setContent")) {
+                        content[0] = args[0];
+                        return proxy;
+                    } else if (method.getName().equals("getContent")) {
+                        return ((Object[]) content[0])[0];
+                    }
+                    return null;
+                }
+            });
+            final Exchange[] exchange = new Exchange[1];
+            exchange[0] = newProxy(Exchange.class, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if (method.getName().equals("createMessage") || method.getName().equals("getMessage")) {
+                        return message;
+                    } else if (method.getName().equals("getState")) {
+                        return ExchangeState.OK;
+                    } else if (method.getName().equals("send") && handler != null) {
+                        reply(handler, exchange[0]);
+                    }
+                    return null;
+                }
+            });
+            return exchange[0];
+        }
+
+        private void reply(final ExchangeHandler handler, final Exchange exchange) throws Exception {
+            if (_reply == Reply.NOW) {
+                handler.handleMessage(exchange);
+            } else if (_reply == Reply.LATER) {
+                new Thread() {
+                    public void run() {
+                        try {
+                            Thread.sleep(50);
+                            handler.handleMessage(exchange);
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                }.start();
+            }
+        }
+    }
+}
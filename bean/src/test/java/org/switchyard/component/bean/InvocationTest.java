@@ -0,0 +1,147 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.bean;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.switchyard.Exchange;
+import org.switchyard.Message;
+import org.switchyard.ServiceReference;
+import org.switchyard.metadata.ExchangeContract;
+import org.switchyard.metadata.ServiceOperation;
+
+/**
+ * Tests for bean service operation invocations.
+ */
+public class InvocationTest {
+
+    /**
+     * Set to true to run the allocation check, which is only meaningful on a JVM without
+     * coverage agents or other instrumentation.
+     */
+    private static final String ALLOCATION_CHECK = "org.switchyard.test.bean.allocation";
+    private static final int WARMUP_CALLS = 20000;
+    private static final int MEASURED_CALLS = 100000;
+    private static final long MAX_BYTES_PER_CALL = 96;
+
+    @Test
+    public void test_Invoke() throws Exception {
+        BeanServiceMetadata metadata = new BeanServiceMetadata(Echo.class);
+
+        Assert.assertEquals("hello", metadata.getInvocation(newExchange("echo", "hello")).invoke(new EchoBean()));
+        // Client proxies send their args array as the payload...
+        Assert.assertEquals("hello", metadata.getInvocation(newExchange("echo", new Object[]{"hello"})).invoke(new EchoBean()));
+        Assert.assertNull(metadata.getInvocation(newExchange("ping", "ignored")).getArgs());
+    }
+
+    @Test
+    public void test_Type_Mismatch_Fail() {
+        try {
+            new BeanServiceMetadata(Echo.class).getInvocation(newExchange("echo", Integer.valueOf(1)));
+            Assert.fail("Expected BeanComponentException");
+        } catch (BeanComponentException e) {
+            Assert.assertEquals("Bean service operation 'XService#echo' requires a payload type of 'java.lang.String'.  Actual payload type is 'java.lang.Integer'.  You must define and register a Transformer.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void test_No_Payload_Fail() {
+        try {
+            new BeanServiceMetadata(Echo.class).getInvocation(newExchange("echo", null));
+            Assert.fail("Expected BeanComponentException");
+        } catch (BeanComponentException e) {
+            Assert.assertEquals("Bean service operation 'XService#echo' requires a single argument.  Exchange payload specifies no payload.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void test_Multiple_Args_Fail_On_Deploy() {
+        try {
+            new BeanServiceMetadata(Y.class);
+            Assert.fail("Expected RuntimeException");
+        } catch (RuntimeException e) {
+            Assert.assertEquals("Bean service operation '" + Y.class.getName() + "#a' has more than 1 argument.  Bean component currently only supports single argument operations.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void test_Allocation_Per_Call() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean(ALLOCATION_CHECK));
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        // Allocation can't be measured on every JVM...
+        Assume.assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported());
+        com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threadMXBean;
+        BeanServiceMetadata metadata = new BeanServiceMetadata(Echo.class);
+        Exchange exchange = newExchange("echo", "hello");
+        EchoBean bean = new EchoBean();
+
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            metadata.getInvocation(exchange).invoke(bean);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = allocation.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_CALLS; i++) {
+            metadata.getInvocation(exchange).invoke(bean);
+        }
+        long bytesPerCall = (allocation.getThreadAllocatedBytes(threadId) - before) / MEASURED_CALLS;
+
+        Assert.assertTrue("Allocated " + bytesPerCall + " bytes per call", bytesPerCall <= MAX_BYTES_PER_CALL);
+    }
+
+    private static Exchange newExchange(String operationName, Object content) {
+        Map<String, Object> operation = new HashMap<String, Object>();
+        operation.put("getName", operationName);
+        Map<String, Object> contract = new HashMap<String, Object>();
+        contract.put("getServiceOperation", newProxy(ServiceOperation.class, operation));
+        Map<String, Object> message = new HashMap<String, Object>();
+        message.put("getContent", content);
+        Map<String, Object> service = new HashMap<String, Object>();
+        service.put("getName", new QName("XService"));
+        Map<String, Object> exchange = new HashMap<String, Object>();
+        exchange.put("getContract", newProxy(ExchangeContract.class, contract));
+        exchange.put("getMessage", newProxy(Message.class, message));
+        exchange.put("getService", newProxy(ServiceReference.class, service));
+        return newProxy(Exchange.class, exchange);
+    }
+
+    private static <T> T newProxy(Class<T> type, final Map<String, Object> returnValues) {
+        return type.cast(Proxy.newProxyInstance(InvocationTest.class.getClassLoader(), new Class<?>[]{type}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return returnValues.get(method.getName());
+            }
+        }));
+    }
+
+    private interface Y {
+        void a(String in, String in2);
+    }
+}
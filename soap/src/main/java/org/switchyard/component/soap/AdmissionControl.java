@@ -0,0 +1,122 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.switchyard.component.soap.config.model.SOAPBindingModel;
+
+/**
+ * Limits the requests a published WebService handles at the same time, so excess load is
+ * rejected at once instead of holding threads until it times out.
+ */
+final class AdmissionControl {
+
+    private final Semaphore _permits;
+    private final int _queueSize;
+    private final long _queueTimeout;
+    private final int _retryAfter;
+    private final AtomicInteger _waiting = new AtomicInteger();
+    private final AtomicLong _rejected = new AtomicLong();
+
+    private AdmissionControl(final int maxInFlight, final int queueSize, final long queueTimeout, final int retryAfter) {
+        // Fair, so queued requests are admitted in arrival order
+        _permits = new Semaphore(maxInFlight, true);
+        _queueSize = queueSize;
+        _queueTimeout = queueTimeout;
+        _retryAfter = retryAfter;
+    }
+
+    /**
+     * Create the admission control configured for a WebService.
+     * @param config the configuration settings
+     * @return the admission control, or null if every request is accepted
+     */
+    static AdmissionControl create(final SOAPBindingModel config) {
+        Integer maxInFlight = config.getAdmissionMaxInFlight();
+        if (maxInFlight == null) {
+            return null;
+        }
+        return new AdmissionControl(maxInFlight, config.getAdmissionQueueSize(),
+                config.getAdmissionQueueTimeout(), config.getAdmissionRetryAfter());
+    }
+
+    /**
+     * Admit a request, waiting in the queue if there is room in it.
+     * Every successful call must be matched by a call to {@link #release()}.
+     * @return true if the request was admitted, false if it must be rejected
+     */
+    boolean acquire() {
+        try {
+            // A timed acquire honours fairness, so new requests do not overtake queued ones
+            if (_permits.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+            if (_queueSize > 0 && _queueTimeout > 0) {
+                try {
+                    if (_waiting.incrementAndGet() <= _queueSize
+                            && _permits.tryAcquire(_queueTimeout, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                } finally {
+                    _waiting.decrementAndGet();
+                }
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        _rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Release an admitted request.
+     */
+    void release() {
+        _permits.release();
+    }
+
+    /**
+     * Get the seconds a rejected caller is advised to wait before retrying.
+     * @return the retry hint
+     */
+    int getRetryAfter() {
+        return _retryAfter;
+    }
+
+    /**
+     * Get the number of requests waiting to be admitted.
+     * @return the admission queue depth
+     */
+    int getWaiting() {
+        return _waiting.get();
+    }
+
+    /**
+     * Get the number of requests rejected so far.
+     * @return the rejected count
+     */
+    long getRejectedCount() {
+        return _rejected.get();
+    }
+}
@@ -0,0 +1,65 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap;
+
+import javax.xml.soap.SOAPMessage;
+import javax.xml.ws.Service.Mode;
+import javax.xml.ws.ServiceMode;
+import javax.xml.ws.WebServiceContext;
+import javax.xml.ws.WebServiceProvider;
+
+import com.sun.xml.ws.api.server.AsyncProvider;
+import com.sun.xml.ws.api.server.AsyncProviderCallback;
+
+/**
+ * Asynchronous variant of {@link BaseWebService}. The request thread is released as soon as the
+ * exchange is sent and the HTTP response is completed when the service replies.
+ */
+@WebServiceProvider
+@ServiceMode(Mode.MESSAGE)
+public class AsyncBaseWebService implements AsyncProvider<SOAPMessage> {
+    private InboundHandler _serviceConsumer;
+
+    protected AsyncBaseWebService() {
+    }
+
+    /**
+     * Sets the service handler.
+     * @param serviceConsumer the service handler.
+     */
+    public void setConsumer(final InboundHandler serviceConsumer) {
+        _serviceConsumer = serviceConsumer;
+    }
+
+    /**
+     * The Webservice implementation method, invokes the service handler.
+     * @param request the SOAP request
+     * @param callback the callback used to send the SOAP response
+     * @param context the Webservice context
+     */
+    public void invoke(final SOAPMessage request, final AsyncProviderCallback<SOAPMessage> callback, final WebServiceContext context) {
+        MTOMFilter.addAttachments(context, request);
+        _serviceConsumer.invoke(request, new ResponseCallback() {
+            public void send(final SOAPMessage response) {
+                callback.send(response);
+            }
+        });
+    }
+}
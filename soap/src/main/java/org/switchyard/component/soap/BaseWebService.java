@@ -19,10 +19,12 @@
  
 package org.switchyard.component.soap;
 
+import javax.annotation.Resource;
 import javax.xml.soap.SOAPMessage;
 import javax.xml.ws.Provider;
 import javax.xml.ws.Service.Mode;
 import javax.xml.ws.ServiceMode;
+import javax.xml.ws.WebServiceContext;
 import javax.xml.ws.WebServiceProvider;
 
 
@@ -35,6 +37,8 @@ import javax.xml.ws.WebServiceProvider;
 @ServiceMode(Mode.MESSAGE)
 public class BaseWebService implements Provider<SOAPMessage> {
     private InboundHandler _serviceConsumer;
+    @Resource
+    private WebServiceContext _context;
 
     protected BaseWebService() {
     }
@@ -53,6 +57,7 @@ public class BaseWebService implements Provider<SOAPMessage> {
      * @return the SOAP response
      */
     public SOAPMessage invoke(final SOAPMessage request) {
+        MTOMFilter.addAttachments(_context, request);
         return _serviceConsumer.invoke(request);
     }
 }
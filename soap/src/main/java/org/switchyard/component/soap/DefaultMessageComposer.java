@@ -20,7 +20,9 @@
 package org.switchyard.component.soap;
 
 import java.util.Iterator;
+import java.util.Map;
 
+import javax.activation.DataHandler;
 import javax.xml.soap.Node;
 import javax.xml.soap.SOAPBody;
 import javax.xml.soap.SOAPElement;
@@ -29,10 +31,12 @@ import javax.xml.soap.SOAPMessage;
 
 import org.switchyard.Exchange;
 import org.switchyard.Message;
+import org.switchyard.component.soap.util.SOAPUtil;
 
 /**
  * The default implementation of MessageComposer simply copies the SOAP body into
- * the Message and SOAP headers into the Message's context.
+ * the Message and SOAP headers into the Message's context. Attachments are put in the
+ * context as a Map of DataHandlers, see {@link SOAPUtil#ATTACHMENTS}.
  *
  * @author Magesh Kumar B <mageshbk@jboss.com> (C) 2011 Red Hat Inc.
  */
@@ -81,6 +85,11 @@ public class DefaultMessageComposer implements MessageComposer {
             throw new SOAPException("Could not find SOAPElement in SOAPBody");
         }
 
+        final Map<String, DataHandler> attachments = SOAPUtil.getAttachments(soapMessage);
+        if (attachments != null) {
+            message.getContext().setProperty(SOAPUtil.ATTACHMENTS, attachments);
+        }
+
         return message;
     }
 }
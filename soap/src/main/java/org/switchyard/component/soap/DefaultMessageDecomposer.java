@@ -19,22 +19,37 @@
 
 package org.switchyard.component.soap;
 
+import java.io.StringReader;
+import java.util.Map;
+
+import javax.activation.DataHandler;
+import javax.xml.soap.SOAPBody;
 import javax.xml.soap.SOAPException;
 import javax.xml.soap.SOAPMessage;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
 
+import org.apache.log4j.Logger;
 import org.switchyard.Message;
 import org.switchyard.component.soap.util.SOAPUtil;
+import org.switchyard.component.soap.util.XMLHelper;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
 /**
  * The default implementation of MessageDecomposer simply copies the Message body onto SOAP
- * and adds SOAP headers from the Message's context.
+ * and adds SOAP headers from the Message's context. Attachments in the context, see
+ * {@link SOAPUtil#ATTACHMENTS}, are added to the SOAP message.
  *
  * @author Magesh Kumar B <mageshbk@jboss.com> (C) 2011 Red Hat Inc.
  */
 public class DefaultMessageDecomposer implements MessageDecomposer {
 
+    private static final Logger LOGGER = Logger.getLogger(DefaultMessageDecomposer.class);
+
     /**
      * Extract the SOAPMessage from Message.
      * @param message a Message to be converted
@@ -52,22 +67,37 @@ public class DefaultMessageDecomposer implements MessageDecomposer {
             if (messagePayload instanceof SOAPMessage) {
                 return (SOAPMessage) messagePayload;
             }
-            
+
+            if (messagePayload instanceof String) {
+                appendString(response.getSOAPBody(), (String) messagePayload);
+                addAttachments(response, message);
+                return response;
+            }
+
             final Element input = toElement(messagePayload);
 
             if (input == null) {
                 throw new SOAPException("Null response from service");
             }
             try {
-                Node node = response.getSOAPBody().getOwnerDocument().importNode(input, true);
-                response.getSOAPBody().appendChild(node);
+                final SOAPBody body = response.getSOAPBody();
+                body.appendChild(toBodyNode(body.getOwnerDocument(), input));
             } catch (Exception e) {
                 throw new SOAPException("Unable to parse SOAP Message", e);
             }
+            addAttachments(response, message);
         }
         return response;
     }
 
+    @SuppressWarnings("unchecked")
+    private void addAttachments(final SOAPMessage soapMessage, final Message message) {
+        final Map<String, DataHandler> attachments = (Map<String, DataHandler>) message.getContext().getProperty(SOAPUtil.ATTACHMENTS);
+        if (attachments != null) {
+            SOAPUtil.addAttachments(soapMessage, attachments);
+        }
+    }
+
     private Element toElement(Object messagePayload) throws SOAPException {
         if (messagePayload == null) {
             // Let the caller deal with null...
@@ -76,15 +106,62 @@ public class DefaultMessageDecomposer implements MessageDecomposer {
 
         if (messagePayload instanceof Element) {
             return (Element) messagePayload;
-        } else if (messagePayload instanceof String) {
+        }
+
+        if (messagePayload instanceof DOMSource) {
+            // Such as a streamed payload, which is parsed here
+            Node node = ((DOMSource) messagePayload).getNode();
+            if (node instanceof Document) {
+                node = ((Document) node).getDocumentElement();
+            }
+            if (node instanceof Element) {
+                return (Element) node;
+            }
+        }
+
+        throw new SOAPException("Unsupported SOAP message payload type '" + messagePayload.getClass().getName() + "'.  Must be a DOM Element, a DOMSource, or a String.");
+    }
+
+    private Node toBodyNode(final Document document, final Element input) {
+        // A detached SAAJ element, such as one taken from an inbound request by the composer,
+        // can be moved across instead of copied
+        if ((input instanceof javax.xml.soap.Node) && (input.getParentNode() == null)) {
             try {
-                return SOAPUtil.parseAsDom((String) messagePayload).getDocumentElement();
-            } catch (Exception e) {
-                e.printStackTrace();
-                throw new SOAPException("Error parsing SOAP message to DOM Element.", e);
+                final Node node = document.adoptNode(input);
+                if ((node != null) && (node.getOwnerDocument() == document)) {
+                    return node;
+                }
+            } catch (DOMException dome) {
+                // Different implementation, fall back to a copy
+                LOGGER.debug("Unable to adopt payload, copying it instead", dome);
             }
         }
+        return document.importNode(input, true);
+    }
 
-        throw new SOAPException("Unsupported SOAP message payload type '" + messagePayload.getClass().getName() + "'.  Must be a DOM Element, or a String.");
+    private void appendString(final SOAPBody body, final String messagePayload) throws SOAPException {
+        // Parse the characters straight into the SOAP body, so no intermediate Document is built
+        final Node last = body.getLastChild();
+        try {
+            XMLHelper.transformWithoutProcessingInstructions(new StringReader(messagePayload), new DOMResult(body));
+        } catch (TransformerException te) {
+            throw new SOAPException("Error parsing SOAP message to DOM Element.", te);
+        }
+
+        // Only keep the document element, dropping any comments around it
+        boolean found = false;
+        Node node = (last == null) ? body.getFirstChild() : last.getNextSibling();
+        while (node != null) {
+            final Node next = node.getNextSibling();
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                found = true;
+            } else {
+                body.removeChild(node);
+            }
+            node = next;
+        }
+        if (!found) {
+            throw new SOAPException("Null response from service");
+        }
     }
 }
@@ -0,0 +1,161 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.wsdl.Operation;
+import javax.wsdl.Port;
+import javax.xml.namespace.QName;
+
+import org.switchyard.component.soap.util.WSDLUtil;
+import org.switchyard.metadata.BaseExchangeContract;
+
+/**
+ * Routes inbound SOAP requests to the WSDL operation they invoke.
+ *
+ * The table is built once when the endpoint is started so that routing a request
+ * costs a single hash lookup instead of walking the WSDL.
+ */
+public final class DispatchTable {
+
+    private final Map<QName, Entry> _byPayload;
+    private final Map<String, Entry> _bySoapAction;
+    private final Map<String, Entry> _byName;
+
+    /**
+     * Build the dispatch table for a WSDL port.
+     *
+     * @param port the WSDL port
+     * @param contracts the exchange contracts keyed by operation name
+     */
+    public DispatchTable(final Port port, final Map<String, BaseExchangeContract> contracts) {
+        Map<QName, Entry> byPayload = new HashMap<QName, Entry>();
+        Map<String, Entry> bySoapAction = new HashMap<String, Entry>();
+        Map<String, Entry> byName = new HashMap<String, Entry>();
+        Set<String> sharedSoapActions = new HashSet<String>();
+
+        for (Map.Entry<String, BaseExchangeContract> contract : contracts.entrySet()) {
+            Operation operation = WSDLUtil.getOperation(port, contract.getKey());
+            Entry entry = new Entry(operation, contract.getValue());
+            byName.put(operation.getName(), entry);
+            byPayload.put(entry.getInputQName(), entry);
+
+            // A SOAPAction shared by several operations cannot be used for routing
+            String soapAction = WSDLUtil.getSoapAction(port, operation.getName());
+            if (soapAction != null && soapAction.length() > 0 && !sharedSoapActions.contains(soapAction)) {
+                if (bySoapAction.put(soapAction, entry) != null) {
+                    bySoapAction.remove(soapAction);
+                    sharedSoapActions.add(soapAction);
+                }
+            }
+        }
+
+        _byPayload = Collections.unmodifiableMap(byPayload);
+        _bySoapAction = Collections.unmodifiableMap(bySoapAction);
+        _byName = Collections.unmodifiableMap(byName);
+    }
+
+    /**
+     * Find the operation for a request, by the QName of its first SOAP body element
+     * and then by its SOAPAction. Failing both, an operation whose name matches the
+     * body element's local name is returned so that the caller can report the mismatch.
+     *
+     * @param payloadQName the QName of the first SOAP body element, may be null
+     * @param soapAction the SOAPAction of the request, may be null
+     * @return the matching entry, or null if no operation matches
+     */
+    public Entry lookup(final QName payloadQName, final String soapAction) {
+        Entry entry = null;
+        if (payloadQName != null) {
+            entry = _byPayload.get(payloadQName);
+        }
+        if (entry == null && soapAction != null) {
+            entry = _bySoapAction.get(soapAction);
+        }
+        if (entry == null && payloadQName != null) {
+            entry = _byName.get(payloadQName.getLocalPart());
+        }
+        return entry;
+    }
+
+    /**
+     * Get the entry for an operation name.
+     *
+     * @param operationName the WSDL operation name
+     * @return the entry, or null if there is no such operation
+     */
+    public Entry getEntry(final String operationName) {
+        return _byName.get(operationName);
+    }
+
+    /**
+     * Everything needed to dispatch a request to one WSDL operation.
+     */
+    public static final class Entry {
+        private final Operation _operation;
+        private final BaseExchangeContract _contract;
+        private final boolean _oneWay;
+        private final QName _inputQName;
+
+        private Entry(final Operation operation, final BaseExchangeContract contract) {
+            _operation = operation;
+            _contract = contract;
+            _oneWay = WSDLUtil.isOneWay(operation);
+            _inputQName = operation.getInput().getMessage().getQName();
+        }
+
+        /**
+         * Get the WSDL operation.
+         * @return the operation
+         */
+        public Operation getOperation() {
+            return _operation;
+        }
+
+        /**
+         * Get the exchange contract for the operation.
+         * @return the exchange contract
+         */
+        public BaseExchangeContract getContract() {
+            return _contract;
+        }
+
+        /**
+         * Check if the operation has no response.
+         * @return true if one way
+         */
+        public boolean isOneWay() {
+            return _oneWay;
+        }
+
+        /**
+         * Get the QName expected on the input payload.
+         * @return the input message QName
+         */
+        public QName getInputQName() {
+            return _inputQName;
+        }
+    }
+}
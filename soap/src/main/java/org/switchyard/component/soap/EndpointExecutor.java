@@ -0,0 +1,211 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.switchyard.component.soap.config.model.SOAPBindingModel;
+import org.switchyard.component.soap.util.NamedThreadFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * The Executor that runs requests for a published WebService, counting queued and running requests.
+ * A request rejected by the pool is answered with 503 Service Unavailable.
+ */
+final class EndpointExecutor implements Executor {
+
+    private static final Logger LOGGER = Logger.getLogger(EndpointExecutor.class);
+    private static final String CALLER_RUNS = "callerRuns";
+    private static final String ABORT = "abort";
+    private static final long KEEPALIVE = 60;
+
+    private final ExecutorService _delegate;
+    private final String _name;
+    private final AtomicInteger _queued = new AtomicInteger();
+    private final AtomicInteger _active = new AtomicInteger();
+    private final AtomicBoolean _unansweredWarned = new AtomicBoolean();
+
+    private EndpointExecutor(final ExecutorService delegate, final String name) {
+        _delegate = delegate;
+        _name = name;
+    }
+
+    /**
+     * Create the Executor configured for a WebService.
+     * @param config the configuration settings
+     * @param name the name of the WebService, used to name the threads
+     * @return the Executor, or null if none is configured
+     */
+    static EndpointExecutor create(final SOAPBindingModel config, final String name) {
+        if (config.getExecutorVirtualThreads()) {
+            ExecutorService virtualExecutor = newVirtualThreadExecutor();
+            if (virtualExecutor != null) {
+                return new EndpointExecutor(virtualExecutor, name);
+            }
+            LOGGER.warn("Virtual threads are not supported by this JVM, WebService " + name + " uses the executor pool settings.");
+        }
+        Integer threads = config.getExecutorThreads();
+        if (threads == null) {
+            return null;
+        }
+        Integer queueSize = config.getExecutorQueueSize();
+        BlockingQueue<Runnable> queue;
+        if (queueSize == null) {
+            queue = new LinkedBlockingQueue<Runnable>();
+        } else if (queueSize == 0) {
+            queue = new SynchronousQueue<Runnable>();
+        } else {
+            queue = new LinkedBlockingQueue<Runnable>(queueSize);
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEPALIVE, TimeUnit.SECONDS, queue,
+                new NamedThreadFactory("SOAPGateway-" + name + "-", false), getRejectionPolicy(config.getExecutorRejectionPolicy(), name));
+        executor.allowCoreThreadTimeOut(true);
+        return new EndpointExecutor(executor, name);
+    }
+
+    private static RejectedExecutionHandler getRejectionPolicy(final String policy, final String name) {
+        if (CALLER_RUNS.equals(policy)) {
+            return new ThreadPoolExecutor.CallerRunsPolicy();
+        }
+        if (!ABORT.equals(policy)) {
+            LOGGER.warn("Unknown rejection policy '" + policy + "' for WebService " + name + ", using '" + ABORT + "'.");
+        }
+        return new ThreadPoolExecutor.AbortPolicy();
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException nsme) {
+            return null;
+        } catch (Exception e) {
+            LOGGER.warn("Could not create a virtual thread executor", e);
+            return null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void execute(final Runnable command) {
+        _queued.incrementAndGet();
+        try {
+            _delegate.execute(new Runnable() {
+                public void run() {
+                    _queued.decrementAndGet();
+                    _active.incrementAndGet();
+                    try {
+                        command.run();
+                    } finally {
+                        _active.decrementAndGet();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ree) {
+            _queued.decrementAndGet();
+            reject(command);
+        }
+    }
+
+    /**
+     * Answer a rejected request. The JAX-WS runtime swallows a rejection without closing the
+     * HTTP exchange, so the client would wait for its read timeout instead.
+     * @param command the rejected request
+     */
+    private void reject(final Runnable command) {
+        HttpExchange exchange = getHttpExchange(command);
+        if (exchange == null) {
+            if (_unansweredWarned.compareAndSet(false, true)) {
+                LOGGER.warn("Cannot answer requests rejected by the executor of WebService " + _name
+                        + " on this JAX-WS runtime, running them on the calling thread.");
+            }
+            command.run();
+            return;
+        }
+        try {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_UNAVAILABLE, -1);
+        } catch (IOException ioe) {
+            LOGGER.debug("Could not answer a rejected request for WebService " + _name, ioe);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Get the HTTP exchange a request of the JAX-WS runtime runs for.
+     * @param command the request
+     * @return the exchange, or null if the request does not hold one
+     */
+    private static HttpExchange getHttpExchange(final Runnable command) {
+        for (Field field : command.getClass().getDeclaredFields()) {
+            if (HttpExchange.class.isAssignableFrom(field.getType())) {
+                try {
+                    field.setAccessible(true);
+                    return (HttpExchange) field.get(command);
+                } catch (Exception e) {
+                    LOGGER.debug("Could not read the HTTP exchange of " + command.getClass().getName(), e);
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the number of requests waiting for a thread.
+     * @return the queue depth
+     */
+    int getQueueDepth() {
+        return _queued.get();
+    }
+
+    /**
+     * Get the number of requests being run.
+     * @return the active thread count
+     */
+    int getActiveThreads() {
+        return _active.get();
+    }
+
+    /**
+     * Stop accepting requests, letting those already accepted finish.
+     */
+    void shutdown() {
+        _delegate.shutdown();
+    }
+}
@@ -19,12 +19,24 @@
  
 package org.switchyard.component.soap;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.activation.DataHandler;
 import javax.wsdl.Operation;
 import javax.wsdl.Port;
 import javax.wsdl.WSDLException;
@@ -32,9 +44,12 @@ import javax.xml.namespace.QName;
 import javax.xml.soap.Node;
 import javax.xml.soap.SOAPException;
 import javax.xml.soap.SOAPMessage;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.ws.Endpoint;
+import javax.xml.ws.WebServiceException;
+import javax.xml.ws.soap.SOAPBinding;
 
 import org.apache.log4j.Logger;
 import org.switchyard.BaseHandler;
@@ -44,32 +59,44 @@ import org.switchyard.HandlerException;
 import org.switchyard.Message;
 import org.switchyard.ServiceReference;
 import org.switchyard.component.soap.config.model.SOAPBindingModel;
+import org.switchyard.component.soap.metrics.GatewayMetrics;
+import org.switchyard.component.soap.metrics.OperationMetrics;
+import org.switchyard.component.soap.util.AttachmentDataSource;
+import org.switchyard.component.soap.util.LazyDOMSource;
+import org.switchyard.component.soap.util.NamedThreadFactory;
 import org.switchyard.component.soap.util.SOAPUtil;
 import org.switchyard.component.soap.util.WSDLUtil;
 import org.switchyard.metadata.BaseExchangeContract;
 
+import com.sun.net.httpserver.HttpContext;
+
 /**
  * Hanldes SOAP requests to invoke a SwitchYard service.
  *
  * @author Magesh Kumar B <mageshbk@jboss.com> (C) 2011 Red Hat Inc.
  */
-public class InboundHandler extends BaseHandler {
+public class InboundHandler extends BaseHandler implements GatewayMetrics.Gauges {
 
     private static final Logger LOGGER = Logger.getLogger(InboundHandler.class);
-    private static final long DEFAULT_TIMEOUT = 15000;
-    private static final int DEFAULT_SLEEP = 100;
     private static final String MESSAGE_NAME = "MESSAGE_NAME";
     private static final String WSDL_LOCATION = "javax.xml.ws.wsdl.description";
+    private static final long PURGE_INTERVAL = 1000;
 
-    private final ConcurrentHashMap<String, BaseExchangeContract> _contracts = new ConcurrentHashMap<String, BaseExchangeContract>();
-    private static ThreadLocal<SOAPMessage> _response = new ThreadLocal<SOAPMessage>();
+    private final ConcurrentHashMap<String, Long> _timeouts = new ConcurrentHashMap<String, Long>();
+    private final ConcurrentHashMap<Exchange, MeteredCallback> _pendingResponses = new ConcurrentHashMap<Exchange, MeteredCallback>();
+    private final GatewayMetrics _metrics = new GatewayMetrics(this);
 
     private MessageComposer _composer;
     private MessageDecomposer _decomposer;
     private ServiceReference _service;
-    private long _waitTimeout = DEFAULT_TIMEOUT; // default of 15 seconds
     private Endpoint _endpoint;
+    private HttpContext _httpContext;
+    private volatile EndpointExecutor _executor;
+    private volatile AdmissionControl _admission;
+    private volatile ScheduledThreadPoolExecutor _timeoutScheduler;
     private Port _wsdlPort;
+    private URL _wsdlUrl;
+    private DispatchTable _dispatchTable;
     private String _scheme = "http";
     private SOAPBindingModel _config;
 
@@ -106,6 +133,31 @@ public class InboundHandler extends BaseHandler {
         }
     }
 
+    /**
+     * Resolve the WSDL port ahead of start. This does not depend on the Service, so it can run
+     * before the Service is available and is skipped by start if already done.
+     * @throws WebServicePublishException If unable to read the WSDL
+     */
+    public synchronized void prepare() throws WebServicePublishException {
+        if (_wsdlPort != null) {
+            return;
+        }
+        try {
+            PortName portName = _config.getPort();
+            javax.wsdl.Service wsdlService = WSDLUtil.getService(_config.getWsdl(), portName);
+            Port wsdlPort = WSDLUtil.getPort(wsdlService, portName);
+            // Update the portName
+            portName.setServiceQName(wsdlService.getQName());
+            portName.setName(wsdlPort.getName());
+            _wsdlUrl = WSDLUtil.getURL(_config.getWsdl());
+            _wsdlPort = wsdlPort;
+        } catch (MalformedURLException e) {
+            throw new WebServicePublishException(e);
+        } catch (WSDLException e) {
+            throw new WebServicePublishException(e);
+        }
+    }
+
     /**
      * Start lifecycle.
      * @param service The Service instance.
@@ -114,20 +166,80 @@ public class InboundHandler extends BaseHandler {
     public void start(ServiceReference service) throws WebServicePublishException {
         try {
             _service = service;
+            prepare();
             PortName portName = _config.getPort();
-            javax.wsdl.Service wsdlService = WSDLUtil.getService(_config.getWsdl(), portName);
-            _wsdlPort = WSDLUtil.getPort(wsdlService, portName);
-            // Update the portName
-            portName.setServiceQName(wsdlService.getQName());
-            portName.setName(_wsdlPort.getName());
-            
-            BaseWebService wsProvider = new BaseWebService();
-            // Hook the handler
-            wsProvider.setConsumer(this);
+
+            Object wsProvider;
+            boolean soapMessages = false;
+            if (_config.getPassthrough() && (_config.getAsync() || _config.getStreaming())) {
+                LOGGER.warn("Asynchronous and streaming modes are not supported for passthrough WebService " + portName + ", envelopes are relayed synchronously.");
+            } else if (_config.getAsync() && _config.getStreaming()) {
+                LOGGER.warn("Streaming is not supported for asynchronous WebService " + portName + ", the SOAP envelope will be parsed.");
+            }
+            if (_config.getPassthrough()) {
+                PassthroughWebService passthroughProvider = new PassthroughWebService();
+                // Hook the handler
+                passthroughProvider.setConsumer(this);
+                wsProvider = passthroughProvider;
+            } else if (_config.getAsync()) {
+                AsyncBaseWebService asyncProvider = new AsyncBaseWebService();
+                // Hook the handler
+                asyncProvider.setConsumer(this);
+                wsProvider = asyncProvider;
+                soapMessages = true;
+                final ScheduledThreadPoolExecutor timeoutScheduler = new ScheduledThreadPoolExecutor(1,
+                        new NamedThreadFactory("SOAPGateway-" + portName.getServiceName() + "-timeout-", true));
+                // Cancelled timeouts stay queued until purged, along with their exchanges
+                timeoutScheduler.scheduleWithFixedDelay(new Runnable() {
+                    public void run() {
+                        timeoutScheduler.purge();
+                    }
+                }, PURGE_INTERVAL, PURGE_INTERVAL, TimeUnit.MILLISECONDS);
+                _timeoutScheduler = timeoutScheduler;
+            } else if (_config.getStreaming()) {
+                StreamingWebService streamingProvider = new StreamingWebService();
+                // Hook the handler
+                streamingProvider.setConsumer(this);
+                wsProvider = streamingProvider;
+            } else {
+                BaseWebService syncProvider = new BaseWebService();
+                // Hook the handler
+                syncProvider.setConsumer(this);
+                wsProvider = syncProvider;
+                soapMessages = true;
+            }
             
-            _contracts.putAll(WSDLUtil.getContracts(_wsdlPort, service));
+            Map<String, BaseExchangeContract> contracts = WSDLUtil.getContracts(_wsdlPort, service);
+            _dispatchTable = new DispatchTable(_wsdlPort, contracts);
+            Map<String, Long> operationTimeouts = _config.getOperationTimeouts();
+            for (String operationName : contracts.keySet()) {
+                Long timeout = operationTimeouts.get(operationName);
+                _timeouts.put(operationName, timeout != null ? timeout : _config.getTimeout());
+                _metrics.getOperation(operationName);
+            }
+            for (String operationName : operationTimeouts.keySet()) {
+                if (!contracts.containsKey(operationName)) {
+                    LOGGER.warn("Ignoring timeout for unknown operation '" + operationName + "' on service '" + service.getName() + "'.");
+                }
+            }
+
+            boolean streamAttachments = false;
+            if (_config.getMtom()) {
+                if (!soapMessages) {
+                    LOGGER.warn("MTOM attachments are not streamed for streaming or passthrough WebService " + portName + ", the JAX-WS runtime inlines them.");
+                } else if (!_config.getSharedServer()) {
+                    // The filter needs an HTTP context, which a server of the JAX-WS runtime does not give out
+                    throw new WebServicePublishException("MTOM WebService " + portName + " streams attachments through the shared HTTP server of "
+                            + _config.getServerHost() + ":" + _config.getServerPort() + ", set sharedServer on its binding.");
+                } else {
+                    streamAttachments = true;
+                }
+            }
 
             _endpoint = Endpoint.create(wsProvider);
+            if (_config.getMtom()) {
+                ((SOAPBinding) _endpoint.getBinding()).setMTOMEnabled(true);
+            }
             List<Source> metadata = new ArrayList<Source>();
             StreamSource source = WSDLUtil.getStream(_config.getWsdl());
             metadata.add(source);
@@ -137,6 +249,11 @@ public class InboundHandler extends BaseHandler {
             properties.put(Endpoint.WSDL_PORT, portName.getPortQName());
             properties.put(WSDL_LOCATION, _config.getWsdl());
             _endpoint.setProperties(properties);
+            _admission = AdmissionControl.create(_config);
+            _executor = EndpointExecutor.create(_config, portName.getServiceName());
+            if (_executor != null) {
+                _endpoint.setExecutor(_executor);
+            }
 
             String path = "/" + portName.getServiceName();
             if (_config.getContextPath() != null) {
@@ -144,18 +261,88 @@ public class InboundHandler extends BaseHandler {
             }
             String publishUrl = _scheme + "://" + _config.getServerHost() + ":" + _config.getServerPort() + path;
 
-            _endpoint.publish(publishUrl);
+            if (_config.getSharedServer()) {
+                // Attachments are taken out of the request by a filter on the HTTP context
+                _httpContext = SharedHttpServer.createContext(_config.getServerHost(), _config.getServerPort(), path, _config.getServerThreads());
+                if (streamAttachments) {
+                    _httpContext.getFilters().add(new MTOMFilter(_config.getAttachmentSpillThreshold(), _config.getAttachmentSpillDirectory()));
+                }
+                _endpoint.publish(_httpContext);
+            } else {
+                _endpoint.publish(publishUrl);
+            }
             LOGGER.info("WebService published at " + publishUrl);
         } catch (WSDLException e) {
             throw new WebServicePublishException(e);
+        } catch (IOException ioe) {
+            throw new WebServicePublishException(ioe);
         }
     }
 
+    /**
+     * Get the number of requests waiting for a thread of the configured executor.
+     * @return the queue depth, or 0 if no executor is configured
+     */
+    public int getQueueDepth() {
+        EndpointExecutor executor = _executor;
+        return (executor != null) ? executor.getQueueDepth() : 0;
+    }
+
+    /**
+     * Get the number of requests being run by the configured executor.
+     * @return the active thread count, or 0 if no executor is configured
+     */
+    public int getActiveThreads() {
+        EndpointExecutor executor = _executor;
+        return (executor != null) ? executor.getActiveThreads() : 0;
+    }
+
+    /**
+     * Get the number of requests waiting to be admitted once maxInFlight is reached.
+     * @return the admission queue depth, or 0 if admission is not limited
+     */
+    public int getAdmissionQueueDepth() {
+        AdmissionControl admission = _admission;
+        return (admission != null) ? admission.getWaiting() : 0;
+    }
+
+    /**
+     * Get the number of requests rejected because too many were in flight.
+     * @return the rejected count, or 0 if admission is not limited
+     */
+    public long getRejectedCount() {
+        AdmissionControl admission = _admission;
+        return (admission != null) ? admission.getRejectedCount() : 0;
+    }
+
+    /**
+     * Get the request metrics of this WebService, per operation.
+     * @return the metrics
+     */
+    public GatewayMetrics getMetrics() {
+        return _metrics;
+    }
+
     /**
      * Stop lifecycle.
      */
     public void stop() {
         _endpoint.stop();
+        if (_httpContext != null) {
+            SharedHttpServer.removeContext(_httpContext);
+            _httpContext = null;
+        }
+        if (_executor != null) {
+            _executor.shutdown();
+            _executor = null;
+        }
+        if (_timeoutScheduler != null) {
+            _timeoutScheduler.shutdownNow();
+            _timeoutScheduler = null;
+        }
+        if (_wsdlUrl != null) {
+            WSDLUtil.evict(_wsdlUrl);
+        }
         LOGGER.info("WebService " + _config.getPort() + " stopped.");
     }
 
@@ -167,7 +354,10 @@ public class InboundHandler extends BaseHandler {
     @Override
     public void handleMessage(final Exchange exchange) throws HandlerException {
         try {
-            _response.set(_decomposer.decompose(exchange.getMessage()));
+            if (completeEnvelope(exchange, false)) {
+                return;
+            }
+            complete(exchange, _decomposer.decompose(exchange.getMessage()), false);
         } catch (SOAPException se) {
             throw new HandlerException("Unexpected exception generating SOAP Message", se);
         }
@@ -180,136 +370,611 @@ public class InboundHandler extends BaseHandler {
     @Override
     public void handleFault(final Exchange exchange) {
         try {
-            _response.set(_decomposer.decompose(exchange.getMessage()));
+            if (completeEnvelope(exchange, true)) {
+                return;
+            }
+            complete(exchange, _decomposer.decompose(exchange.getMessage()), true);
         } catch (SOAPException se) {
             try {
-                _response.set(SOAPUtil.generateFault(se));
+                complete(exchange, SOAPUtil.generateFault(se), true);
             } catch (SOAPException e) {
                 LOGGER.error(e);
             }
         }
     }
 
+    /**
+     * Hand the response over to the caller waiting on the exchange, whichever thread it is on.
+     * @param exchange the Exchange
+     * @param response the SOAP response
+     * @param fault true if the response is a fault
+     */
+    private void complete(final Exchange exchange, final SOAPMessage response, final boolean fault) {
+        MeteredCallback callback = _pendingResponses.remove(exchange);
+        if (callback == null) {
+            LOGGER.warn("Discarding response for exchange on service '" + _service.getName() + "', no caller is waiting for it.");
+        } else if (fault) {
+            callback.sendFault(response);
+        } else {
+            callback.send(response);
+        }
+    }
+
+    /**
+     * Hand a whole SOAP envelope replied by the service over to a passthrough caller, as is.
+     * @param exchange the Exchange
+     * @param fault true if the reply is a fault
+     * @return true if the reply was an envelope for a passthrough WebService and has been handed over
+     * @throws SOAPException if the reply could not be read
+     */
+    private boolean completeEnvelope(final Exchange exchange, final boolean fault) throws SOAPException {
+        Object content = exchange.getMessage().getContent();
+        if (!_config.getPassthrough() || !(content instanceof Source)) {
+            return false;
+        }
+        LazyDOMSource envelope;
+        try {
+            envelope = LazyDOMSource.create((Source) content);
+            if (!SOAPUtil.isEnvelope(envelope)) {
+                // A payload, so it is wrapped in an envelope as usual
+                exchange.getMessage().setContent(envelope);
+                return false;
+            }
+        } catch (Exception e) {
+            throw new SOAPException("Unable to read the SOAP envelope replied by service '" + _service.getName() + "'.", e);
+        }
+        MeteredCallback callback = _pendingResponses.remove(exchange);
+        if (callback == null || !callback.sendEnvelope(envelope, fault)) {
+            LOGGER.warn("Discarding response for exchange on service '" + _service.getName() + "', no caller is waiting for it.");
+        }
+        return true;
+    }
+
     /**
      * The delegate method called by the Webservice implementation.
      * @param soapMessage the SOAP request
      * @return the SOAP response
      */
     public SOAPMessage invoke(final SOAPMessage soapMessage) {
-        String operationName;
-        BaseExchangeContract exchangeContract;
-        Operation operation;
-        Boolean oneWay = false;
+        final AdmissionControl admission = _admission;
+        if (admission != null && !admission.acquire()) {
+            return overloaded(admission);
+        }
+        try {
+            PendingResponse response = new PendingResponse();
+            return waitForResponse(send(soapMessage, response), response);
+        } finally {
+            if (admission != null) {
+                admission.release();
+            }
+        }
+    }
+
+    /**
+     * The delegate method called by the streaming Webservice implementation.
+     * @param payload the SOAP body payload
+     * @return the SOAP response
+     */
+    public SOAPMessage invoke(final LazyDOMSource payload) {
+        final AdmissionControl admission = _admission;
+        if (admission != null && !admission.acquire()) {
+            return overloaded(admission);
+        }
+        try {
+            PendingResponse response = new PendingResponse();
+            return waitForResponse(send(payload, response), response);
+        } finally {
+            if (admission != null) {
+                admission.release();
+            }
+        }
+    }
 
-        // Clear the response...
-        _response.remove();
+    private SOAPMessage waitForResponse(final Exchange exchange, final PendingResponse response) {
+        if (exchange != null && !response.await(getTimeout(exchange))) {
+            // Stop correlating, so a late reply is discarded
+            MeteredCallback callback = _pendingResponses.remove(exchange);
+            if (callback != null) {
+                callback.sendTimeout(timedOut(exchange));
+            }
+        }
+        return response.get();
+    }
 
+    /**
+     * The delegate method called by the passthrough Webservice implementation.
+     * @param envelope the SOAP envelope
+     * @return the SOAP envelope of the response
+     */
+    public Source invokePassthrough(final LazyDOMSource envelope) {
+        final AdmissionControl admission = _admission;
+        if (admission != null && !admission.acquire()) {
+            return toSource(overloaded(admission));
+        }
         try {
-            operationName = SOAPUtil.getOperationName(soapMessage);
-            operation = WSDLUtil.getOperation(_wsdlPort, operationName);
-            oneWay = WSDLUtil.isOneWay(operation);
-            exchangeContract = _contracts.get(operationName);
+            PendingResponse response = new PendingResponse();
+            SOAPMessage soapResponse = waitForResponse(sendEnvelope(envelope, response), response);
+            LazyDOMSource responseEnvelope = response.getEnvelope();
+            if (responseEnvelope != null) {
+                // A stream, so the runtime writes the bytes out without building a DOM
+                return new StreamSource(responseEnvelope.getInputStream());
+            }
+            return toSource(soapResponse);
+        } finally {
+            if (admission != null) {
+                admission.release();
+            }
+        }
+    }
+
+    private Source toSource(final SOAPMessage soapMessage) {
+        if (soapMessage == null) {
+            return null;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            soapMessage.writeTo(bytes);
+            return new StreamSource(new ByteArrayInputStream(bytes.toByteArray()));
+        } catch (Exception e) {
+            throw new WebServiceException(e);
+        }
+    }
+
+    /**
+     * The delegate method called by the asynchronous Webservice implementation.
+     * Returns as soon as the exchange is sent, the callback receives the response.
+     * @param soapMessage the SOAP request
+     * @param responseCallback the callback for the SOAP response
+     */
+    public void invoke(final SOAPMessage soapMessage, final ResponseCallback responseCallback) {
+        final ScheduledThreadPoolExecutor timeoutScheduler = _timeoutScheduler;
+        if (timeoutScheduler == null || timeoutScheduler.isShutdown()) {
+            responseCallback.send(stopped());
+            return;
+        }
+        final AdmissionControl admission = _admission;
+        if (admission != null && !admission.acquire()) {
+            responseCallback.send(overloaded(admission));
+            return;
+        }
+        final AdmittedCallback admitted = (admission != null) ? new AdmittedCallback(admission, responseCallback) : null;
+        final ResponseCallback callback = (admitted != null) ? admitted : responseCallback;
+        final Exchange exchange;
+        try {
+            exchange = send(soapMessage, callback);
+        } catch (RuntimeException re) {
+            if (admitted != null) {
+                admitted.release();
+            }
+            throw re;
+        }
+        MeteredCallback metered = (exchange != null) ? _pendingResponses.get(exchange) : null;
+        if (metered != null) {
+            try {
+                metered.setTimeout(timeoutScheduler.schedule(new Runnable() {
+                    public void run() {
+                        MeteredCallback pending = _pendingResponses.remove(exchange);
+                        if (pending != null) {
+                            pending.sendTimeout(timedOut(exchange));
+                        }
+                    }
+                }, getTimeout(exchange), TimeUnit.MILLISECONDS));
+            } catch (RejectedExecutionException ree) {
+                // Stopped while sending, so nothing would time the request out
+                MeteredCallback pending = _pendingResponses.remove(exchange);
+                if (pending != null) {
+                    pending.sendFault(stopped());
+                }
+            }
+        }
+    }
+
+    /**
+     * Send the SOAP request into SwitchYard.
+     * @param soapMessage the SOAP request
+     * @param callback the callback for the SOAP response
+     * @return the Exchange awaiting a response, or null if the callback has already been called
+     */
+    private Exchange send(final SOAPMessage soapMessage, final ResponseCallback callback) {
+        QName payloadQName;
+        DispatchTable.Entry entry;
+
+        try {
+            payloadQName = SOAPUtil.getPayloadQName(soapMessage);
+            entry = _dispatchTable.lookup(payloadQName, SOAPUtil.getSoapAction(soapMessage));
         } catch (SOAPException e) {
             LOGGER.error(e);
+            _metrics.unrouted();
+            callback.send(null);
             return null;
         }
+        return send(entry, payloadQName, soapMessage, null, callback);
+    }
+
+    /**
+     * Send the SOAP body payload into SwitchYard, routing on its root element without building a DOM.
+     * @param payload the SOAP body payload
+     * @param callback the callback for the SOAP response
+     * @return the Exchange awaiting a response, or null if the callback has already been called
+     */
+    private Exchange send(final LazyDOMSource payload, final ResponseCallback callback) {
+        QName payloadQName;
 
-        if (exchangeContract == null) {
-            handleException(oneWay, new SOAPException("Operation '" + operationName + "' not available on target Service '" + _service.getName() + "'."));
-            return _response.get();
+        try {
+            payloadQName = payload.getRootQName();
+        } catch (XMLStreamException e) {
+            LOGGER.error(e);
+            _metrics.unrouted();
+            callback.send(null);
+            return null;
         }
+        return send(_dispatchTable.lookup(payloadQName, null), payloadQName, null, payload, callback);
+    }
+
+    /**
+     * Send the whole SOAP envelope into SwitchYard, routing on its body payload without building a DOM.
+     * @param envelope the SOAP envelope
+     * @param callback the callback for the SOAP response
+     * @return the Exchange awaiting a response, or null if the callback has already been called
+     */
+    private Exchange sendEnvelope(final LazyDOMSource envelope, final ResponseCallback callback) {
+        QName payloadQName;
+        LazyDOMSource content = envelope;
 
         try {
-            Exchange exchange;
+            payloadQName = SOAPUtil.getPayloadQName(envelope.getInputStream());
+            if (!_config.getPreserveHeaders()) {
+                content = SOAPUtil.removeHeader(envelope);
+            }
+        } catch (XMLStreamException e) {
+            LOGGER.error(e);
+            _metrics.unrouted();
+            callback.send(null);
+            return null;
+        }
+        return send(_dispatchTable.lookup(payloadQName, null), payloadQName, null, content, callback);
+    }
 
-            exchange = _service.createExchange(exchangeContract, this);
-            Message message = _composer.compose(soapMessage, exchange);
+    /**
+     * Send the request to the routed operation, either as a SOAP message for the
+     * composer or as a payload that goes into the Message untouched.
+     * @param entry the routed operation, null if none matched
+     * @param payloadQName the QName of the SOAP body payload
+     * @param soapMessage the SOAP request, null when streaming or passing through
+     * @param payload the SOAP body payload or envelope, null unless streaming or passing through
+     * @param callback the callback for the SOAP response
+     * @return the Exchange awaiting a response, or null if the callback has already been called
+     */
+    private Exchange send(final DispatchTable.Entry entry, final QName payloadQName,
+            final SOAPMessage soapMessage, final LazyDOMSource payload, final ResponseCallback callback) {
+        if (entry == null) {
+            _metrics.unrouted();
+            String operationName = payloadQName != null ? payloadQName.getLocalPart() : null;
+            callback.send(handleException(false, new SOAPException("Operation '" + operationName + "' not available on target Service '" + _service.getName() + "'.")));
+            return null;
+        }
 
-            if (!assertComposedMessageOK(message, operation, oneWay)) {
-                return _response.get();
+        OperationMetrics metrics = _metrics.getOperation(entry.getOperation().getName());
+        MeteredCallback metered = new MeteredCallback(metrics, callback);
+        metrics.recordPayloadSize(payload != null ? payload.getLength() : SOAPUtil.getContentLength(soapMessage));
+        boolean oneWay = entry.isOneWay();
+        Exchange exchange = null;
+        try {
+            exchange = _service.createExchange(entry.getContract(), this);
+            Message message;
+            if (soapMessage != null) {
+                message = _composer.compose(soapMessage, exchange);
+                assertComposedMessageOK(message, entry);
+            } else {
+                assertPayloadOK(entry, payloadQName.getNamespaceURI(), payloadQName.getLocalPart());
+                message = exchange.createMessage();
+                message.setContent(payload);
             }
 
             Context msgCtx = message.getContext();
-            msgCtx.setProperty(MESSAGE_NAME, operation.getInput().getMessage().getQName().getLocalPart());
-
+            msgCtx.setProperty(MESSAGE_NAME, entry.getInputQName().getLocalPart());
 
             if (oneWay) {
+                // The service may still read the attachments once the request has been answered
+                retainAttachments(message);
                 exchange.send(message);
-            } else {
-                exchange.send(message);
-                waitForResponse();
+                metered.send(null);
+                return null;
             }
 
-            return _response.get();
+            // Register before sending, the reply may be delivered before send() returns
+            _pendingResponses.put(exchange, metered);
+            exchange.send(message);
+            return exchange;
 
         } catch (SOAPException se) {
-            handleException(oneWay, se);
-        } finally {
-            _response.remove();
+            if (exchange != null) {
+                _pendingResponses.remove(exchange);
+            }
+            metered.sendFault(handleException(oneWay, se));
+            return null;
+        } catch (RuntimeException re) {
+            if (exchange != null) {
+                _pendingResponses.remove(exchange);
+            }
+            metered.abandon();
+            throw re;
         }
+    }
 
-        return null;
+    @SuppressWarnings("unchecked")
+    private static void retainAttachments(final Message message) {
+        Map<String, DataHandler> attachments = (Map<String, DataHandler>) message.getContext().getProperty(SOAPUtil.ATTACHMENTS);
+        if (attachments == null) {
+            return;
+        }
+        for (DataHandler attachment : attachments.values()) {
+            if (attachment.getDataSource() instanceof AttachmentDataSource) {
+                ((AttachmentDataSource) attachment.getDataSource()).retain();
+            }
+        }
     }
 
-    private boolean assertComposedMessageOK(Message soapMessage, Operation operation, Boolean oneWay) {
+    private void assertComposedMessageOK(Message soapMessage, DispatchTable.Entry entry) throws SOAPException {
         Object content = soapMessage.getContent();
 
         if (content == null) {
-            handleException(oneWay, new SOAPException("Composer created a null ESB Message payload for service '" + _service.getName() + "'.  Must be of type '" + SOAPMessage.class.getName() + "'."));
-            return false;
+            throw new SOAPException("Composer created a null ESB Message payload for service '" + _service.getName() + "'.  Must be of type '" + SOAPMessage.class.getName() + "'.");
         } else if (!(content instanceof Node)) {
-            handleException(oneWay, new SOAPException("Composer created invalid ESB Message payload type '" + content.getClass().getName() + "' for service '" + _service.getName() + "'.  Must be of type '" + Node.class.getName() + "'."));
-            return false;
+            throw new SOAPException("Composer created invalid ESB Message payload type '" + content.getClass().getName() + "' for service '" + _service.getName() + "'.  Must be of type '" + Node.class.getName() + "'.");
         }
 
         Node inputMessage = (Node) content;
-        QName expectedPayloadType = operation.getInput().getMessage().getQName();
+        assertPayloadOK(entry, inputMessage.getNamespaceURI(), inputMessage.getLocalName());
+    }
+
+    private void assertPayloadOK(DispatchTable.Entry entry, String actualNS, String actualLN) throws SOAPException {
+        Operation operation = entry.getOperation();
+        QName expectedPayloadType = entry.getInputQName();
         String expectedNS = expectedPayloadType.getNamespaceURI();
         String expectedLN = expectedPayloadType.getLocalPart();
-        String actualNS = inputMessage.getNamespaceURI();
-        String actualLN = inputMessage.getLocalName();
 
         if (expectedNS != null && !expectedNS.equals(actualNS)) {
-            handleException(oneWay, new SOAPException("Invalid input SOAP payload namespace for service operation '" + operation.getName() + "' (service '" + _service.getName()
-                                                                              + "').  Port defines operation namespace as '" + expectedNS + "'.  Actual namespace on input SOAP message '" + actualNS + "'."));
-            return false;
+            throw new SOAPException("Invalid input SOAP payload namespace for service operation '" + operation.getName() + "' (service '" + _service.getName()
+                                                                              + "').  Port defines operation namespace as '" + expectedNS + "'.  Actual namespace on input SOAP message '" + actualNS + "'.");
         } else if (expectedLN != null && !expectedLN.equals(actualLN)) {
-            handleException(oneWay, new SOAPException("Invalid input SOAP payload localNamePart for service operation '" + operation.getName() + "' (service '" + _service.getName()
-                                                                              + "').  Port defines operation localNamePart as '" + expectedLN + "'.  Actual localNamePart on input SOAP message '" + actualLN + "'."));
-            return false;
+            throw new SOAPException("Invalid input SOAP payload localNamePart for service operation '" + operation.getName() + "' (service '" + _service.getName()
+                                                                              + "').  Port defines operation localNamePart as '" + expectedLN + "'.  Actual localNamePart on input SOAP message '" + actualLN + "'.");
         }
+    }
 
-        return true;
+    private long getTimeout(Exchange exchange) {
+        Long timeout = _timeouts.get(exchange.getContract().getServiceOperation().getName());
+        return (timeout != null) ? timeout : _config.getTimeout();
     }
 
-    private void handleException(Boolean oneWay, SOAPException se) {
+    private SOAPMessage timedOut(Exchange exchange) {
+        String operationName = exchange.getContract().getServiceOperation().getName();
+        return handleException(false, new SOAPException("Timed out after " + getTimeout(exchange) + "ms waiting for a response from operation '"
+                                                        + operationName + "' on service '" + _service.getName() + "'."));
+    }
+
+    private SOAPMessage stopped() {
+        return handleException(false, new SOAPException("WebService " + _config.getPort() + " has been stopped."));
+    }
+
+    private SOAPMessage overloaded(AdmissionControl admission) {
+        try {
+            return SOAPUtil.generateRetryFault("Service '" + _service.getName() + "' is overloaded, retry after "
+                                               + admission.getRetryAfter() + " seconds.", admission.getRetryAfter());
+        } catch (SOAPException e) {
+            LOGGER.error(e);
+            return null;
+        }
+    }
+
+    /**
+     * Gets the number of requests that timed out waiting for a response from the service.
+     * @return the timeout count
+     */
+    public long getTimeoutCount() {
+        return _metrics.getTimeoutCount();
+    }
+
+    private SOAPMessage handleException(Boolean oneWay, SOAPException se) {
         if (oneWay) {
             LOGGER.error(se);
         } else {
             try {
-                _response.set(SOAPUtil.generateFault(se));
+                return SOAPUtil.generateFault(se);
             } catch (SOAPException e) {
                 LOGGER.error(e);
             }
         }
+        return null;
     }
 
     /**
-     * Sleep until we get a response or timeout has reached.
+     * Releases the admission of an asynchronous request when its response is sent.
      */
-    private void waitForResponse() {
-        long start = System.currentTimeMillis();
+    private static final class AdmittedCallback implements ResponseCallback {
+        private final AdmissionControl _admission;
+        private final ResponseCallback _callback;
+        private final AtomicBoolean _released = new AtomicBoolean();
+
+        AdmittedCallback(final AdmissionControl admission, final ResponseCallback callback) {
+            _admission = admission;
+            _callback = callback;
+        }
 
-        while (System.currentTimeMillis() < start + _waitTimeout) {
-            if (_response.get() != null) {
-                return;
+        /**
+         * Release the admission and send the response.
+         * @param response the SOAP response
+         */
+        public void send(final SOAPMessage response) {
+            release();
+            _callback.send(response);
+        }
+
+        /**
+         * Release the admission, if not already released.
+         */
+        void release() {
+            if (_released.compareAndSet(false, true)) {
+                _admission.release();
             }
+        }
+    }
+
+    /**
+     * Records a request against its operation once its response, fault or timeout is sent.
+     */
+    private static final class MeteredCallback implements ResponseCallback {
+        private final OperationMetrics _metrics;
+        private final ResponseCallback _callback;
+        private final long _start;
+        private final AtomicBoolean _recorded = new AtomicBoolean();
+        private volatile Future<?> _timeout;
+
+        MeteredCallback(final OperationMetrics metrics, final ResponseCallback callback) {
+            _metrics = metrics;
+            _callback = callback;
+            _start = metrics.begin();
+        }
+
+        /**
+         * Record the request and send the response.
+         * @param response the SOAP response
+         */
+        public void send(final SOAPMessage response) {
+            end(false);
+            _callback.send(response);
+        }
+
+        /**
+         * Record the request as a fault and send the fault.
+         * @param fault the SOAP fault
+         */
+        void sendFault(final SOAPMessage fault) {
+            end(true);
+            _callback.send(fault);
+        }
+
+        /**
+         * Record the request as timed out and send the fault.
+         * @param fault the SOAP fault
+         */
+        void sendTimeout(final SOAPMessage fault) {
+            if (_recorded.compareAndSet(false, true)) {
+                _metrics.timedOut(_start);
+            }
+            _callback.send(fault);
+        }
+
+        /**
+         * Record the request and send the response envelope of a passthrough request.
+         * @param envelope the SOAP envelope
+         * @param fault true if the envelope holds a fault
+         * @return false if the caller is not waiting for an envelope
+         */
+        boolean sendEnvelope(final LazyDOMSource envelope, final boolean fault) {
+            if (!(_callback instanceof PendingResponse)) {
+                return false;
+            }
+            end(fault);
+            ((PendingResponse) _callback).sendEnvelope(envelope);
+            return true;
+        }
+
+        /**
+         * Record the request as a fault without sending anything, the caller gets the error.
+         */
+        void abandon() {
+            end(true);
+        }
+
+        /**
+         * Set the scheduled timeout of the request, cancelled as soon as the request ends.
+         * @param timeout the scheduled timeout
+         */
+        void setTimeout(final Future<?> timeout) {
+            _timeout = timeout;
+            if (_recorded.get()) {
+                timeout.cancel(false);
+            }
+        }
+
+        private void end(final boolean fault) {
+            if (_recorded.compareAndSet(false, true)) {
+                _metrics.end(_start, fault);
+                Future<?> timeout = _timeout;
+                if (timeout != null) {
+                    timeout.cancel(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Holds the response for a single in-flight request-response exchange.
+     */
+    private static final class PendingResponse implements ResponseCallback {
+        private final CountDownLatch _latch = new CountDownLatch(1);
+        private volatile SOAPMessage _response;
+        private volatile LazyDOMSource _envelope;
+
+        /**
+         * Set the response and wake up the waiting caller.
+         * @param response the SOAP response
+         */
+        public void send(final SOAPMessage response) {
+            _response = response;
+            _latch.countDown();
+        }
+
+        /**
+         * Set the response envelope of a passthrough request and wake up the waiting caller.
+         * @param envelope the SOAP envelope
+         */
+        void sendEnvelope(final LazyDOMSource envelope) {
+            _envelope = envelope;
+            _latch.countDown();
+        }
+
+        /**
+         * Get the response envelope of a passthrough request.
+         * @return the SOAP envelope, or null if the response is a SOAP message
+         */
+        LazyDOMSource getEnvelope() {
+            return _envelope;
+        }
+
+        /**
+         * Wait until the response arrives or timeout has reached.
+         * @param timeout the timeout in milliseconds
+         * @return true if the response arrived in time
+         */
+        boolean await(final long timeout) {
             try {
-                Thread.sleep(DEFAULT_SLEEP);
+                return _latch.await(timeout, TimeUnit.MILLISECONDS);
             } catch (InterruptedException e) {
-                //ignore
-                continue;
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        /**
+         * Get the response, waiting for it if it is still being delivered.
+         * @return the SOAP response
+         */
+        SOAPMessage get() {
+            boolean interrupted = false;
+            while (_latch.getCount() > 0) {
+                try {
+                    _latch.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
             }
+            return _response;
         }
     }
 }
@@ -0,0 +1,361 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.activation.DataHandler;
+import javax.activation.DataSource;
+import javax.activation.MimeType;
+import javax.activation.MimeTypeParseException;
+import javax.xml.soap.SOAPMessage;
+import javax.xml.ws.WebServiceContext;
+import javax.xml.ws.handler.MessageContext;
+
+import org.apache.log4j.Logger;
+import org.switchyard.component.soap.util.AttachmentDataSource;
+import org.switchyard.component.soap.util.MultipartReader;
+import org.switchyard.component.soap.util.SOAPUtil;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+/**
+ * Takes the attachments out of MTOM/XOP requests before they reach the JAX-WS runtime, which
+ * would otherwise inline them in the SOAP body as base64 text. Attachments are streamed into
+ * {@link AttachmentDataSource}s and the runtime only reads the root SOAP envelope. The published
+ * WebService then adds them to the SOAP message, see {@link #addAttachments(WebServiceContext, SOAPMessage)}.
+ */
+final class MTOMFilter extends Filter {
+
+    private static final Logger LOGGER = Logger.getLogger(MTOMFilter.class);
+    private static final String ATTACHMENTS_HEADER = "X-SwitchYard-Attachments";
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String XOP_TYPE = "application/xop+xml";
+    private static final String DEFAULT_ENVELOPE_TYPE = "text/xml";
+    private static final int BUFFER_SIZE = 8192;
+    private static final Map<String, Map<String, DataHandler>> PENDING = new ConcurrentHashMap<String, Map<String, DataHandler>>();
+
+    private final int _spillThreshold;
+    private final File _spillDirectory;
+
+    /**
+     * Create a filter for the context of a published WebService.
+     * @param spillThreshold the size in bytes up to which an attachment is kept in memory
+     * @param spillDirectory the directory for spilled attachments, or null for the default temporary directory
+     */
+    MTOMFilter(final int spillThreshold, final String spillDirectory) {
+        _spillThreshold = spillThreshold;
+        _spillDirectory = (spillDirectory != null) ? new File(spillDirectory) : null;
+    }
+
+    @Override
+    public String description() {
+        return "Streams MTOM/XOP attachments";
+    }
+
+    @Override
+    public void doFilter(final HttpExchange exchange, final Chain chain) throws IOException {
+        final MimeType contentType = getXOPContentType(exchange.getRequestHeaders().getFirst(CONTENT_TYPE));
+        if (contentType == null) {
+            if (exchange.getRequestHeaders().containsKey(ATTACHMENTS_HEADER)) {
+                // Only this filter tells the WebService where the attachments of a request are
+                final Headers headers = new Headers();
+                headers.putAll(exchange.getRequestHeaders());
+                headers.remove(ATTACHMENTS_HEADER);
+                chain.doFilter(new FilteredExchange(exchange, headers, exchange.getRequestBody(), null));
+            } else {
+                chain.doFilter(exchange);
+            }
+            return;
+        }
+
+        final Map<String, DataHandler> attachments = new LinkedHashMap<String, DataHandler>();
+        byte[] envelope = null;
+        String envelopeType = null;
+        boolean complete = false;
+        try {
+            final String start = SOAPUtil.toContentId(contentType.getParameter("start"));
+            final MultipartReader reader = new MultipartReader(exchange.getRequestBody(), contentType.getParameter("boundary"));
+            while (reader.nextPart()) {
+                String contentId = SOAPUtil.toContentId(reader.getHeader("Content-ID"));
+                if ((envelope == null) && ((start == null) || start.equals(contentId))) {
+                    envelope = readFully(reader.getPartStream());
+                    envelopeType = reader.getHeader(CONTENT_TYPE);
+                } else {
+                    if (contentId == null) {
+                        contentId = String.valueOf(attachments.size());
+                    }
+                    DataSource source = AttachmentDataSource.read(reader.getPartStream(), reader.getHeader(CONTENT_TYPE),
+                            contentId, _spillThreshold, _spillDirectory);
+                    attachments.put(contentId, new DataHandler(source));
+                }
+            }
+            complete = true;
+        } finally {
+            if (!complete) {
+                dispose(attachments);
+            }
+        }
+
+        if (envelope == null) {
+            LOGGER.warn("Rejecting MTOM request to " + exchange.getRequestURI() + " without a SOAP envelope part");
+            dispose(attachments);
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_REQUEST, -1);
+            exchange.close();
+            return;
+        }
+
+        // The runtime sees a plain SOAP request, tagged with the key of its attachments
+        final String key = UUID.randomUUID().toString();
+        final Headers headers = new Headers();
+        headers.putAll(exchange.getRequestHeaders());
+        headers.remove(ATTACHMENTS_HEADER);
+        headers.remove("Transfer-Encoding");
+        headers.set("Content-Length", String.valueOf(envelope.length));
+        headers.set(CONTENT_TYPE, getEnvelopeType(contentType, envelopeType));
+        headers.set(ATTACHMENTS_HEADER, key);
+        PENDING.put(key, attachments);
+        chain.doFilter(new FilteredExchange(exchange, headers, new ByteArrayInputStream(envelope), key));
+    }
+
+    /**
+     * Add the attachments taken out of the current request to its SOAP message.
+     * @param context the context of the request
+     * @param soapMessage the SOAP message of the request
+     */
+    @SuppressWarnings("unchecked")
+    static void addAttachments(final WebServiceContext context, final SOAPMessage soapMessage) {
+        if (context == null) {
+            return;
+        }
+        final Map<String, List<String>> headers = (Map<String, List<String>>) context.getMessageContext().get(MessageContext.HTTP_REQUEST_HEADERS);
+        if (headers == null) {
+            return;
+        }
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (ATTACHMENTS_HEADER.equalsIgnoreCase(header.getKey()) && (header.getValue() != null) && !header.getValue().isEmpty()) {
+                Map<String, DataHandler> attachments = PENDING.get(header.getValue().get(0));
+                if (attachments != null) {
+                    SOAPUtil.addAttachments(soapMessage, attachments);
+                }
+                return;
+            }
+        }
+    }
+
+    private static MimeType getXOPContentType(final String header) {
+        if (header == null) {
+            return null;
+        }
+        try {
+            MimeType contentType = new MimeType(header);
+            if (contentType.match("multipart/related") && XOP_TYPE.equalsIgnoreCase(contentType.getParameter("type"))) {
+                return contentType;
+            }
+        } catch (MimeTypeParseException mtpe) {
+            // Left for the runtime to reject
+            LOGGER.debug("Invalid Content-Type '" + header + "'", mtpe);
+        }
+        return null;
+    }
+
+    /**
+     * The root part is application/xop+xml, its type parameter or the start-info parameter of the
+     * package gives the type of the SOAP envelope, such as text/xml for SOAP 1.1.
+     */
+    private static String getEnvelopeType(final MimeType contentType, final String rootType) {
+        String type = contentType.getParameter("start-info");
+        String charset = null;
+        String action = null;
+        if (rootType != null) {
+            try {
+                MimeType root = new MimeType(rootType);
+                if (root.getParameter("type") != null) {
+                    type = root.getParameter("type");
+                }
+                charset = root.getParameter("charset");
+                action = root.getParameter("action");
+            } catch (MimeTypeParseException mtpe) {
+                LOGGER.debug("Invalid root part Content-Type '" + rootType + "'", mtpe);
+            }
+        }
+        StringBuilder envelopeType = new StringBuilder((type != null) ? type : DEFAULT_ENVELOPE_TYPE);
+        if (charset != null) {
+            envelopeType.append("; charset=").append(charset);
+        }
+        if (action != null) {
+            envelopeType.append("; action=\"").append(action).append('"');
+        }
+        return envelopeType.toString();
+    }
+
+    private static byte[] readFully(final InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read = in.read(buffer);
+        while (read > -1) {
+            out.write(buffer, 0, read);
+            read = in.read(buffer);
+        }
+        return out.toByteArray();
+    }
+
+    private static void dispose(final Map<String, DataHandler> attachments) {
+        for (DataHandler attachment : attachments.values()) {
+            if (attachment.getDataSource() instanceof AttachmentDataSource) {
+                AttachmentDataSource source = (AttachmentDataSource) attachment.getDataSource();
+                if (!source.isRetained()) {
+                    source.dispose();
+                }
+            }
+        }
+    }
+
+    /**
+     * The exchange as passed on to the runtime, with the request headers and body set by the filter.
+     * The attachments of the request, if any, are released once the response has been written,
+     * unless they have been retained by the message of a one-way request.
+     */
+    private static final class FilteredExchange extends HttpExchange {
+        private final HttpExchange _exchange;
+        private final Headers _requestHeaders;
+        private final String _key;
+        private InputStream _requestBody;
+
+        private FilteredExchange(final HttpExchange exchange, final Headers requestHeaders, final InputStream requestBody, final String key) {
+            _exchange = exchange;
+            _requestHeaders = requestHeaders;
+            _requestBody = requestBody;
+            _key = key;
+        }
+
+        @Override
+        public void close() {
+            try {
+                _exchange.close();
+            } finally {
+                Map<String, DataHandler> attachments = (_key != null) ? PENDING.remove(_key) : null;
+                if (attachments != null) {
+                    dispose(attachments);
+                }
+            }
+        }
+
+        @Override
+        public Headers getRequestHeaders() {
+            return _requestHeaders;
+        }
+
+        @Override
+        public InputStream getRequestBody() {
+            return _requestBody;
+        }
+
+        @Override
+        public void setStreams(final InputStream i, final OutputStream o) {
+            if (i != null) {
+                _requestBody = i;
+            }
+            _exchange.setStreams(null, o);
+        }
+
+        @Override
+        public Headers getResponseHeaders() {
+            return _exchange.getResponseHeaders();
+        }
+
+        @Override
+        public URI getRequestURI() {
+            return _exchange.getRequestURI();
+        }
+
+        @Override
+        public String getRequestMethod() {
+            return _exchange.getRequestMethod();
+        }
+
+        @Override
+        public HttpContext getHttpContext() {
+            return _exchange.getHttpContext();
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            return _exchange.getResponseBody();
+        }
+
+        @Override
+        public void sendResponseHeaders(final int rCode, final long responseLength) throws IOException {
+            _exchange.sendResponseHeaders(rCode, responseLength);
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return _exchange.getRemoteAddress();
+        }
+
+        @Override
+        public int getResponseCode() {
+            return _exchange.getResponseCode();
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return _exchange.getLocalAddress();
+        }
+
+        @Override
+        public String getProtocol() {
+            return _exchange.getProtocol();
+        }
+
+        @Override
+        public Object getAttribute(final String name) {
+            return _exchange.getAttribute(name);
+        }
+
+        @Override
+        public void setAttribute(final String name, final Object value) {
+            _exchange.setAttribute(name, value);
+        }
+
+        @Override
+        public HttpPrincipal getPrincipal() {
+            return _exchange.getPrincipal();
+        }
+    }
+}
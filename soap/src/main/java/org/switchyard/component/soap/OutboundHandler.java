@@ -19,16 +19,34 @@
  
 package org.switchyard.component.soap;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.wsdl.Port;
 import javax.wsdl.WSDLException;
+import javax.xml.namespace.QName;
 import javax.xml.soap.SOAPException;
 import javax.xml.soap.SOAPMessage;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.ws.AsyncHandler;
+import javax.xml.ws.BindingProvider;
 import javax.xml.ws.Dispatch;
+import javax.xml.ws.Response;
 import javax.xml.ws.Service;
 import javax.xml.ws.soap.AddressingFeature;
+import javax.xml.ws.soap.SOAPBinding;
 import javax.xml.ws.soap.SOAPFaultException;
 
 import org.apache.log4j.Logger;
@@ -37,6 +55,9 @@ import org.switchyard.Exchange;
 import org.switchyard.HandlerException;
 import org.switchyard.Message;
 import org.switchyard.component.soap.config.model.SOAPBindingModel;
+import org.switchyard.component.soap.metrics.GatewayMetrics;
+import org.switchyard.component.soap.metrics.OperationMetrics;
+import org.switchyard.component.soap.util.LazyDOMSource;
 import org.switchyard.component.soap.util.SOAPUtil;
 import org.switchyard.component.soap.util.WSDLUtil;
 
@@ -45,13 +66,30 @@ import org.switchyard.component.soap.util.WSDLUtil;
  *
  * @author Magesh Kumar B <mageshbk@jboss.com> (C) 2011 Red Hat Inc.
  */
-public class OutboundHandler extends BaseHandler {
+public class OutboundHandler extends BaseHandler implements GatewayMetrics.Gauges {
 
     private static final Logger LOGGER = Logger.getLogger(OutboundHandler.class);
+    // The property prefixes of the standalone JAX-WS RI and of the RI built into the JDK
+    private static final String[] RI_PREFIXES = {"com.sun.xml.ws.", "com.sun.xml.internal.ws."};
+    private static final String CONNECT_TIMEOUT = "connect.timeout";
+    private static final String REQUEST_TIMEOUT = "request.timeout";
+    private static final String CHUNK_SIZE = "transport.http.client.streaming.chunk.size";
+    private static final int DEFAULT_MAX_IDLE = 16;
+    private static final int DEFAULT_MTOM_CHUNK_SIZE = 8192;
+
     private MessageComposer _composer;
     private MessageDecomposer _decomposer;
-    private Dispatch<SOAPMessage> _dispatcher;
+    private Service _service;
+    private QName _portQName;
+    private final DispatchPool<SOAPMessage> _dispatchers = new DispatchPool<SOAPMessage>(SOAPMessage.class);
+    private final DispatchPool<Source> _envelopeDispatchers = new DispatchPool<Source>(Source.class);
+    private int _maxIdleDispatchers = DEFAULT_MAX_IDLE;
+    private Semaphore _connections;
+    private int _maxConnections;
+    private final GatewayMetrics _metrics = new GatewayMetrics(this);
+    private final AtomicBoolean _unsupportedWarned = new AtomicBoolean();
     private Port _port;
+    private URL _wsdlUrl;
     private SOAPBindingModel _config;
 
     /**
@@ -93,8 +131,8 @@ public class OutboundHandler extends BaseHandler {
      * Start lifecycle.
      * @throws WebServiceConsumeException If unable to load the WSDL
      */
-    public void start() throws WebServiceConsumeException {
-        if (_dispatcher == null) {
+    public synchronized void start() throws WebServiceConsumeException {
+        if (_service == null) {
             try {
                 PortName portName = _config.getPort();
                 javax.wsdl.Service wsdlService = WSDLUtil.getService(_config.getWsdl(), portName);
@@ -106,10 +144,22 @@ public class OutboundHandler extends BaseHandler {
                 URL wsdlUrl = WSDLUtil.getURL(_config.getWsdl());
                 LOGGER.info("Creating dispatch with WSDL " + wsdlUrl);
                 Service service = Service.create(wsdlUrl, portName.getServiceQName());
-                _dispatcher = service.createDispatch(portName.getPortQName(), SOAPMessage.class, Service.Mode.MESSAGE, new AddressingFeature(false, false));
-                // this does not return a proper qualified Fault element and has no Detail so defering for now
-                // BindingProvider bp = (BindingProvider) _dispatcher;
-                // bp.getRequestContext().put("jaxws.response.throwExceptionIfSOAPFault", Boolean.FALSE);
+                _portQName = portName.getPortQName();
+
+                Integer maxConnections = _config.getMaxConnections();
+                if (maxConnections != null && maxConnections > 0) {
+                    _connections = new Semaphore(maxConnections, true);
+                    _maxConnections = maxConnections;
+                    _maxIdleDispatchers = maxConnections;
+                }
+                if (_config.getPassthrough() && _config.getAsync()) {
+                    LOGGER.warn("Asynchronous invocation is not supported for passthrough WebService consumer " + portName + ", envelopes are relayed synchronously.");
+                }
+                // Fail early if the port cannot be dispatched to
+                Dispatch<SOAPMessage> dispatcher = createDispatch(service, SOAPMessage.class);
+                _service = service;
+                _wsdlUrl = wsdlUrl;
+                _dispatchers.release(dispatcher);
 
             } catch (MalformedURLException e) {
                 throw new WebServiceConsumeException(e);
@@ -119,10 +169,57 @@ public class OutboundHandler extends BaseHandler {
         }
     }
 
+    /**
+     * Get the number of requests waiting for a connection once maxConnections are in use.
+     * @return the queue depth, or 0 if connections are not limited
+     */
+    public int getQueueDepth() {
+        Semaphore connections = _connections;
+        return (connections != null) ? connections.getQueueLength() : 0;
+    }
+
+    /**
+     * Get the number of connections in use.
+     * @return the connections in use, or 0 if connections are not limited
+     */
+    public int getActiveThreads() {
+        Semaphore connections = _connections;
+        return (connections != null) ? _maxConnections - connections.availablePermits() : 0;
+    }
+
+    /**
+     * Requests to external WebServices are not admitted, they wait for a connection.
+     * @return 0
+     */
+    public int getAdmissionQueueDepth() {
+        return 0;
+    }
+
+    /**
+     * Requests to external WebServices are not rejected, they wait for a connection.
+     * @return 0
+     */
+    public long getRejectedCount() {
+        return 0;
+    }
+
+    /**
+     * Get the request metrics of the external WebService, per operation.
+     * @return the metrics
+     */
+    public GatewayMetrics getMetrics() {
+        return _metrics;
+    }
+
     /**
      * Stop lifecycle.
      */
     public void stop() {
+        _dispatchers.clear();
+        _envelopeDispatchers.clear();
+        if (_wsdlUrl != null) {
+            WSDLUtil.evict(_wsdlUrl);
+        }
     }
 
     /**
@@ -133,9 +230,22 @@ public class OutboundHandler extends BaseHandler {
      */
     @Override
     public void handleMessage(final Exchange exchange) throws HandlerException {
+        final OperationMetrics metrics = _metrics.getOperation(exchange.getContract().getServiceOperation().getName());
         try {
+            if (_config.getPassthrough()) {
+                LazyDOMSource envelope = getEnvelope(exchange.getMessage());
+                if (envelope != null) {
+                    invokeService(envelope, exchange, metrics);
+                    return;
+                }
+            }
             SOAPMessage request = _decomposer.decompose(exchange.getMessage());
-            SOAPMessage response = invokeService(request);
+            if (_config.getAsync() && !WSDLUtil.isOneWay(_port, SOAPUtil.getOperationName(request))) {
+                // The reply is sent from the completion callback
+                invokeServiceAsync(request, exchange, metrics);
+                return;
+            }
+            SOAPMessage response = invokeService(request, metrics);
             if (response != null) {
                 Message message = _composer.compose(response, exchange);
                 exchange.send(message);
@@ -148,26 +258,350 @@ public class OutboundHandler extends BaseHandler {
     /**
      * Invoke Webservice via Dispatch API
      * @param soapMessage the SOAP request
+     * @param metrics the metrics of the operation
      * @return the SOAP response
      * @throws SOAPException If a Dispatch could not be created based on the SOAP message.
      */
-    private SOAPMessage invokeService(final SOAPMessage soapMessage) throws SOAPException {
+    private SOAPMessage invokeService(final SOAPMessage soapMessage, final OperationMetrics metrics) throws SOAPException {
 
         SOAPMessage response = null;
+        final long start = metrics.begin();
+        boolean fault = true;
+        Throwable failure = null;
         try {
-            String operationName = SOAPUtil.getOperationName(soapMessage);
-            if (WSDLUtil.isOneWay(_port, operationName)) {
-                _dispatcher.invokeOneWay(soapMessage);
-                //return empty response
-            } else {
-                response = _dispatcher.invoke(soapMessage);
+            acquireConnection();
+        } catch (InterruptedException ie) {
+            metrics.end(start, true);
+            Thread.currentThread().interrupt();
+            throw new SOAPException("Interrupted while waiting for a connection", ie);
+        }
+        try {
+            Dispatch<SOAPMessage> dispatcher = _dispatchers.borrow();
+            try {
+                String operationName = SOAPUtil.getOperationName(soapMessage);
+                if (WSDLUtil.isOneWay(_port, operationName)) {
+                    dispatcher.invokeOneWay(soapMessage);
+                    //return empty response
+                } else {
+                    response = dispatcher.invoke(soapMessage);
+                    metrics.recordPayloadSize(SOAPUtil.getContentLength(response));
+                }
+                fault = false;
+            } finally {
+                _dispatchers.release(dispatcher);
             }
         } catch (SOAPFaultException sfex) {
             response = SOAPUtil.generateFault(sfex);
         } catch (Exception ex) {
+            failure = ex;
             throw new SOAPException("Cannot process SOAP request", ex);
+        } finally {
+            releaseConnection();
+            record(metrics, start, fault, failure);
         }
 
         return response;
     }
+
+    /**
+     * Get the content of a Message as a SOAP envelope to pass through.
+     * @param message the Message
+     * @return the SOAP envelope, or null if the content is not a SOAP envelope
+     * @throws SOAPException If the content could not be read.
+     */
+    private LazyDOMSource getEnvelope(final Message message) throws SOAPException {
+        Object content = message.getContent();
+        if (!(content instanceof Source)) {
+            return null;
+        }
+        try {
+            LazyDOMSource source = LazyDOMSource.create((Source) content);
+            if (SOAPUtil.isEnvelope(source)) {
+                return source;
+            }
+            // A payload, so it is wrapped in an envelope as usual
+            message.setContent(source);
+            return null;
+        } catch (Exception e) {
+            throw new SOAPException("Unable to read the SOAP envelope to pass through", e);
+        }
+    }
+
+    /**
+     * Invoke Webservice via Dispatch API with a whole SOAP envelope, which is written out as is.
+     * The response envelope, if any, is sent on the exchange without building a DOM.
+     * @param envelope the SOAP envelope
+     * @param exchange the Exchange to send the response on
+     * @param metrics the metrics of the operation
+     * @throws SOAPException If the request could not be sent.
+     */
+    private void invokeService(final LazyDOMSource envelope, final Exchange exchange, final OperationMetrics metrics) throws SOAPException {
+        LazyDOMSource response = null;
+        final long start = metrics.begin();
+        boolean fault = true;
+        Throwable failure = null;
+        try {
+            acquireConnection();
+        } catch (InterruptedException ie) {
+            metrics.end(start, true);
+            Thread.currentThread().interrupt();
+            throw new SOAPException("Interrupted while waiting for a connection", ie);
+        }
+        try {
+            QName payloadQName = SOAPUtil.getPayloadQName(envelope.getInputStream());
+            Dispatch<Source> dispatcher = _envelopeDispatchers.borrow();
+            try {
+                Source request = new StreamSource(envelope.getInputStream());
+                if ((payloadQName != null) && WSDLUtil.isOneWay(_port, payloadQName.getLocalPart())) {
+                    dispatcher.invokeOneWay(request);
+                    //return empty response
+                } else {
+                    response = LazyDOMSource.create(dispatcher.invoke(request));
+                    metrics.recordPayloadSize(response.getLength());
+                }
+                fault = false;
+            } finally {
+                _envelopeDispatchers.release(dispatcher);
+            }
+        } catch (SOAPFaultException sfex) {
+            // The runtime throws faults even in message mode, so the envelope is rebuilt
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                SOAPUtil.generateFault(sfex).writeTo(bytes);
+            } catch (IOException ioe) {
+                throw new SOAPException("Cannot process SOAP request", ioe);
+            }
+            response = new LazyDOMSource(bytes.toByteArray());
+        } catch (Exception ex) {
+            failure = ex;
+            throw new SOAPException("Cannot process SOAP request", ex);
+        } finally {
+            releaseConnection();
+            record(metrics, start, fault, failure);
+        }
+
+        if (response != null) {
+            try {
+                if (!_config.getPreserveHeaders()) {
+                    response = SOAPUtil.removeHeader(response);
+                }
+            } catch (XMLStreamException xse) {
+                throw new SOAPException("Cannot process SOAP response", xse);
+            }
+            Message message = exchange.createMessage();
+            message.setContent(response);
+            exchange.send(message);
+        }
+    }
+
+    /**
+     * Invoke Webservice via Dispatch API without waiting for the response. The response,
+     * or a fault if the invocation fails, is sent on the exchange once it arrives.
+     * @param soapMessage the SOAP request
+     * @param exchange the Exchange to send the response on
+     * @param metrics the metrics of the operation
+     * @throws SOAPException If the request could not be sent.
+     */
+    private void invokeServiceAsync(final SOAPMessage soapMessage, final Exchange exchange, final OperationMetrics metrics) throws SOAPException {
+        final long start = metrics.begin();
+        try {
+            acquireConnection();
+        } catch (InterruptedException ie) {
+            metrics.end(start, true);
+            Thread.currentThread().interrupt();
+            throw new SOAPException("Interrupted while waiting for a connection", ie);
+        }
+        boolean sent = false;
+        try {
+            Dispatch<SOAPMessage> dispatcher = _dispatchers.borrow();
+            try {
+                dispatcher.invokeAsync(soapMessage, new AsyncHandler<SOAPMessage>() {
+                    public void handleResponse(final Response<SOAPMessage> res) {
+                        releaseConnection();
+                        handleAsyncResponse(exchange, res, metrics, start);
+                    }
+                });
+                sent = true;
+            } finally {
+                // The request context is read when invokeAsync is called, so the Dispatch can be reused
+                _dispatchers.release(dispatcher);
+            }
+        } catch (Exception ex) {
+            throw new SOAPException("Cannot process SOAP request", ex);
+        } finally {
+            if (!sent) {
+                releaseConnection();
+                metrics.end(start, true);
+            }
+        }
+    }
+
+    private void handleAsyncResponse(final Exchange exchange, final Response<SOAPMessage> res, final OperationMetrics metrics, final long start) {
+        try {
+            SOAPMessage response;
+            boolean fault = true;
+            Throwable failure = null;
+            try {
+                response = res.get();
+                metrics.recordPayloadSize(SOAPUtil.getContentLength(response));
+                fault = false;
+            } catch (ExecutionException ee) {
+                failure = ee.getCause();
+                if (ee.getCause() instanceof SOAPFaultException) {
+                    response = SOAPUtil.generateFault(ee.getCause());
+                } else {
+                    throw new SOAPException("Cannot process SOAP request", ee.getCause());
+                }
+            } finally {
+                record(metrics, start, fault, failure);
+            }
+            if (response != null) {
+                Message message = _composer.compose(response, exchange);
+                exchange.send(message);
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            sendFault(exchange, ie);
+        } catch (SOAPException se) {
+            sendFault(exchange, se);
+        } catch (RuntimeException re) {
+            // Nobody else would answer the exchange, the consumer would wait forever
+            sendFault(exchange, re);
+        }
+    }
+
+    private void sendFault(final Exchange exchange, final Exception ex) {
+        // Mirror what the bus does with a HandlerException thrown by a synchronous handler
+        Message message = exchange.createMessage();
+        message.setContent(new HandlerException("Unexpected exception handling SOAP Message", ex));
+        exchange.sendFault(message);
+    }
+
+    /**
+     * Record the end of a request, as a timeout if it failed for want of a response in time.
+     */
+    private static void record(final OperationMetrics metrics, final long start, final boolean fault, final Throwable failure) {
+        if (isTimeout(failure)) {
+            metrics.timedOut(start);
+        } else {
+            metrics.end(start, fault);
+        }
+    }
+
+    private static boolean isTimeout(final Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SocketTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void acquireConnection() throws InterruptedException {
+        if (_connections != null) {
+            _connections.acquire();
+        }
+    }
+
+    private void releaseConnection() {
+        if (_connections != null) {
+            _connections.release();
+        }
+    }
+
+    private <T> Dispatch<T> createDispatch(final Service service, final Class<T> type) {
+        Dispatch<T> dispatcher;
+        synchronized (service) {
+            dispatcher = service.createDispatch(_portQName, type, Service.Mode.MESSAGE, new AddressingFeature(false, false));
+        }
+        // this does not return a proper qualified Fault element and has no Detail so defering for now
+        // bp.getRequestContext().put("jaxws.response.throwExceptionIfSOAPFault", Boolean.FALSE);
+        Map<String, Object> requestContext = ((BindingProvider) dispatcher).getRequestContext();
+        String prefix = getPropertyPrefix(dispatcher);
+        if (prefix != null) {
+            if (_config.getConnectTimeout() != null) {
+                requestContext.put(prefix + CONNECT_TIMEOUT, _config.getConnectTimeout());
+            }
+            if (_config.getReadTimeout() != null) {
+                requestContext.put(prefix + REQUEST_TIMEOUT, _config.getReadTimeout());
+            }
+            if (_config.getChunkSize() != null) {
+                requestContext.put(prefix + CHUNK_SIZE, _config.getChunkSize());
+            } else if (_config.getMtom()) {
+                // Stream attachments out rather than buffering the request to learn its length
+                requestContext.put(prefix + CHUNK_SIZE, DEFAULT_MTOM_CHUNK_SIZE);
+            }
+        } else if ((_config.getConnectTimeout() != null || _config.getReadTimeout() != null || _config.getChunkSize() != null)
+                && _unsupportedWarned.compareAndSet(false, true)) {
+            LOGGER.warn("The connect timeout, read timeout and chunk size of WebService consumer " + _portQName
+                        + " are ignored, they are not supported by JAX-WS runtime " + dispatcher.getClass().getName() + ".");
+        }
+        if (_config.getMtom()) {
+            ((SOAPBinding) dispatcher.getBinding()).setMTOMEnabled(true);
+        }
+        return dispatcher;
+    }
+
+    /**
+     * Get the request context property prefix of the JAX-WS RI the Dispatch comes from.
+     * @param dispatcher the Dispatch
+     * @return the property prefix, or null if the Dispatch does not come from the RI
+     */
+    private static String getPropertyPrefix(final Dispatch<?> dispatcher) {
+        String className = dispatcher.getClass().getName();
+        for (String prefix : RI_PREFIXES) {
+            if (className.startsWith(prefix)) {
+                return prefix;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Idle Dispatch instances of one type. A Dispatch is used by one thread at a time
+     * as its request context is not thread safe.
+     * @param <T> the type of message the Dispatch sends
+     */
+    private final class DispatchPool<T> {
+        private final Class<T> _type;
+        private final Queue<Dispatch<T>> _idle = new ConcurrentLinkedQueue<Dispatch<T>>();
+        private final AtomicInteger _idleCount = new AtomicInteger();
+
+        private DispatchPool(final Class<T> type) {
+            _type = type;
+        }
+
+        /**
+         * Take an idle Dispatch, or create one if none is idle.
+         * @return the Dispatch
+         */
+        Dispatch<T> borrow() {
+            Dispatch<T> dispatcher = _idle.poll();
+            if (dispatcher == null) {
+                return createDispatch(_service, _type);
+            }
+            _idleCount.decrementAndGet();
+            return dispatcher;
+        }
+
+        /**
+         * Return a Dispatch, keeping it unless enough are idle.
+         * @param dispatcher the Dispatch
+         */
+        void release(final Dispatch<T> dispatcher) {
+            if (_idleCount.incrementAndGet() <= _maxIdleDispatchers) {
+                _idle.offer(dispatcher);
+            } else {
+                _idleCount.decrementAndGet();
+            }
+        }
+
+        /**
+         * Drop the idle Dispatch instances.
+         */
+        void clear() {
+            _idle.clear();
+            _idleCount.set(0);
+        }
+    }
 }
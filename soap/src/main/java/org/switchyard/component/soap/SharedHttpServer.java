@@ -0,0 +1,116 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.log4j.Logger;
+import org.switchyard.component.soap.util.NamedThreadFactory;
+
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An HTTP server shared by all WebServices published on the same host and port, each on its own path.
+ * Requests are handled by one worker pool per server.
+ */
+final class SharedHttpServer {
+
+    private static final Logger LOGGER = Logger.getLogger(SharedHttpServer.class);
+    private static final Map<InetSocketAddress, SharedHttpServer> SERVERS = new HashMap<InetSocketAddress, SharedHttpServer>();
+
+    private final InetSocketAddress _address;
+    private final HttpServer _server;
+    private final ExecutorService _executor;
+    private final int _threads;
+    private int _contexts;
+
+    private SharedHttpServer(final InetSocketAddress address, final int threads) throws IOException {
+        _address = address;
+        _threads = threads;
+        _server = HttpServer.create(address, 0);
+        _executor = Executors.newFixedThreadPool(threads,
+                new NamedThreadFactory("SOAPGateway-" + address.getHostName() + ":" + address.getPort() + "-", false));
+        _server.setExecutor(_executor);
+        _server.start();
+        LOGGER.info("Started shared HTTP server at " + address + " with " + threads + " worker threads");
+    }
+
+    /**
+     * Create a context on the server for the host and port, starting the server if this is its first context.
+     * @param host the host name
+     * @param port the port
+     * @param path the context path
+     * @param threads the number of worker threads, used only if the server is started
+     * @return the context
+     * @throws IOException If the server could not be started
+     */
+    static HttpContext createContext(final String host, final int port, final String path, final int threads) throws IOException {
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        synchronized (SERVERS) {
+            SharedHttpServer shared = SERVERS.get(address);
+            if (shared == null) {
+                shared = new SharedHttpServer(address, threads);
+                SERVERS.put(address, shared);
+            } else if (shared._threads != threads) {
+                LOGGER.warn("Shared HTTP server at " + address + " is already running with " + shared._threads
+                        + " worker threads, ignoring " + threads + " for " + path);
+            }
+            HttpContext context = shared._server.createContext(path);
+            shared._contexts++;
+            return context;
+        }
+    }
+
+    /**
+     * Remove a context created by createContext, stopping the server once it has no contexts left.
+     * @param context the context
+     */
+    static void removeContext(final HttpContext context) {
+        synchronized (SERVERS) {
+            for (SharedHttpServer shared : SERVERS.values()) {
+                if (shared._server == context.getServer()) {
+                    try {
+                        shared._server.removeContext(context);
+                    } catch (IllegalArgumentException iae) {
+                        // Already removed when the Endpoint was stopped
+                        LOGGER.debug("Context " + context.getPath() + " already removed");
+                    }
+                    if (--shared._contexts == 0) {
+                        shared.stop();
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    private void stop() {
+        SERVERS.remove(_address);
+        _server.stop(0);
+        _executor.shutdown();
+        LOGGER.info("Stopped shared HTTP server at " + _address);
+    }
+}
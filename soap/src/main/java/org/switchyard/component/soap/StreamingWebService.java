@@ -0,0 +1,87 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap;
+
+import javax.xml.soap.SOAPBody;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.ws.Provider;
+import javax.xml.ws.Service.Mode;
+import javax.xml.ws.ServiceMode;
+import javax.xml.ws.WebServiceException;
+import javax.xml.ws.WebServiceProvider;
+import javax.xml.ws.soap.SOAPFaultException;
+
+import org.switchyard.component.soap.util.LazyDOMSource;
+import org.w3c.dom.Node;
+
+/**
+ * Streaming variant of {@link BaseWebService}. Receives only the SOAP body payload
+ * and hands it on without building a DOM for the envelope.
+ */
+@WebServiceProvider
+@ServiceMode(Mode.PAYLOAD)
+public class StreamingWebService implements Provider<Source> {
+    private InboundHandler _serviceConsumer;
+
+    protected StreamingWebService() {
+    }
+
+    /**
+     * Sets the service handler.
+     * @param serviceConsumer the service handler.
+     */
+    public void setConsumer(final InboundHandler serviceConsumer) {
+        _serviceConsumer = serviceConsumer;
+    }
+
+    /**
+     * The Webservice implementation method, invokes the service handler.
+     * @param request the SOAP body payload
+     * @return the SOAP body payload of the response
+     */
+    public Source invoke(final Source request) {
+        try {
+            return toPayload(_serviceConsumer.invoke(LazyDOMSource.create(request)));
+        } catch (WebServiceException wse) {
+            throw wse;
+        } catch (Exception e) {
+            throw new WebServiceException(e);
+        }
+    }
+
+    private Source toPayload(final SOAPMessage response) throws SOAPException {
+        if (response == null) {
+            return null;
+        }
+        SOAPBody body = response.getSOAPBody();
+        if (body.hasFault()) {
+            throw new SOAPFaultException(body.getFault());
+        }
+        for (Node node = body.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                return new DOMSource(node);
+            }
+        }
+        return null;
+    }
+}
@@ -19,6 +19,9 @@
 
 package org.switchyard.component.soap.config.model;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import javax.xml.namespace.QName;
 
 import org.switchyard.component.soap.PortName;
@@ -39,6 +42,11 @@ public class SOAPBindingModel extends V1BindingModel {
     public static final String SOAP = "soap";
 
     private static final int DEFAULT_PORT = 8080;
+    private static final long DEFAULT_TIMEOUT = 15000;
+    private static final int DEFAULT_SERVER_THREADS = 20;
+    private static final long DEFAULT_ADMISSION_QUEUE_TIMEOUT = 1000;
+    private static final int DEFAULT_ADMISSION_RETRY_AFTER = 1;
+    private static final int DEFAULT_ATTACHMENT_SPILL_THRESHOLD = 1048576;
 
     private PortName _port;
     private String _wsdl;
@@ -46,9 +54,33 @@ public class SOAPBindingModel extends V1BindingModel {
     private String _serverHost;
     private int _serverPort = -1;
     private String _contextPath;
+    private Boolean _sharedServer;
+    private int _serverThreads = -1;
+    private Integer _executorThreads;
+    private Integer _executorQueueSize;
+    private String _executorRejectionPolicy;
+    private Boolean _executorVirtualThreads;
+    private Integer _admissionMaxInFlight;
+    private int _admissionQueueSize = -1;
+    private long _admissionQueueTimeout = -1;
+    private int _admissionRetryAfter = -1;
     private String _composer;
     private String _decomposer;
     private Boolean _publishAsWS = false;
+    private Boolean _async;
+    private Boolean _streaming;
+    private Boolean _passthrough;
+    private Boolean _preserveHeaders;
+    private Boolean _mtom;
+    private int _attachmentSpillThreshold = -1;
+    private String _attachmentSpillDirectory;
+    private long _timeout = -1;
+    private Map<String, Long> _operationTimeouts;
+    private Integer _connectTimeout;
+    private Integer _readTimeout;
+    private Integer _maxConnections;
+    private Integer _chunkSize;
+
     /**
      * Constructor.
      */
@@ -225,6 +257,295 @@ public class SOAPBindingModel extends V1BindingModel {
         this._contextPath = contextPath;
     }
 
+    /**
+     * Gets if the WebService is published on an HTTP server shared with the other WebServices
+     * on the same serverHost and serverPort, with one worker pool for all of them.
+     * 
+     * This is applicable only if publishAsWS is true. All WebServices on a serverHost and
+     * serverPort must use the same setting.
+     * 
+     * @return the sharedServer flag, false by default
+     */
+    public Boolean getSharedServer() {
+        if (_sharedServer == null) {
+            Configuration childConfig = getModelConfiguration().getFirstChild("sharedServer");
+            if (childConfig == null) {
+                _sharedServer = false;
+            } else {
+                _sharedServer = Boolean.valueOf(childConfig.getValue());
+            }
+        }
+        return _sharedServer;
+    }
+
+    /**
+     * Sets if the WebService is published on an HTTP server shared with the other WebServices
+     * on the same serverHost and serverPort.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @param sharedServer the sharedServer flag to set
+     */
+    public void setSharedServer(Boolean sharedServer) {
+        this._sharedServer = sharedServer;
+    }
+
+    /**
+     * Gets the number of worker threads of the shared HTTP server.
+     * 
+     * This is applicable only if publishAsWS and sharedServer are true. The value of the
+     * first WebService published on a serverHost and serverPort is used.
+     * 
+     * @return the serverThreads, 20 by default
+     */
+    public int getServerThreads() {
+        if (_serverThreads == -1) {
+            Configuration childConfig = getModelConfiguration().getFirstChild("serverThreads");
+            if (childConfig == null) {
+                _serverThreads = DEFAULT_SERVER_THREADS;
+            } else {
+                _serverThreads = Integer.parseInt(childConfig.getValue());
+            }
+        }
+        return _serverThreads;
+    }
+
+    /**
+     * Sets the number of worker threads of the shared HTTP server.
+     * 
+     * This is applicable only if publishAsWS and sharedServer are true.
+     * 
+     * @param serverThreads the serverThreads to set
+     */
+    public void setServerThreads(int serverThreads) {
+        this._serverThreads = serverThreads;
+    }
+
+    /**
+     * Gets the number of threads that run requests for the published WebService.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @return the threads attribute of the executor, or null to let the JAX-WS runtime run requests
+     */
+    public Integer getExecutorThreads() {
+        if (_executorThreads == null) {
+            String threads = getChildAttribute("executor", "threads");
+            if (threads != null) {
+                _executorThreads = Integer.valueOf(threads);
+            }
+        }
+        return _executorThreads;
+    }
+
+    /**
+     * Sets the number of threads that run requests for the published WebService.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @param executorThreads the executorThreads to set
+     */
+    public void setExecutorThreads(Integer executorThreads) {
+        this._executorThreads = executorThreads;
+    }
+
+    /**
+     * Gets the number of requests that may wait for a thread of the published WebService.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @return the queueSize attribute of the executor, or null if unbounded
+     */
+    public Integer getExecutorQueueSize() {
+        if (_executorQueueSize == null) {
+            String queueSize = getChildAttribute("executor", "queueSize");
+            if (queueSize != null) {
+                _executorQueueSize = Integer.valueOf(queueSize);
+            }
+        }
+        return _executorQueueSize;
+    }
+
+    /**
+     * Sets the number of requests that may wait for a thread of the published WebService.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @param executorQueueSize the executorQueueSize to set
+     */
+    public void setExecutorQueueSize(Integer executorQueueSize) {
+        this._executorQueueSize = executorQueueSize;
+    }
+
+    /**
+     * Gets what happens to a request when the queue of the published WebService is full,
+     * either abort, answering it with 503 Service Unavailable, or callerRuns.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @return the rejectionPolicy attribute of the executor, abort by default
+     */
+    public String getExecutorRejectionPolicy() {
+        if (_executorRejectionPolicy == null) {
+            _executorRejectionPolicy = getChildAttribute("executor", "rejectionPolicy");
+            if (_executorRejectionPolicy == null) {
+                _executorRejectionPolicy = "abort";
+            }
+        }
+        return _executorRejectionPolicy;
+    }
+
+    /**
+     * Sets what happens to a request when the queue of the published WebService is full.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @param executorRejectionPolicy the executorRejectionPolicy to set
+     */
+    public void setExecutorRejectionPolicy(String executorRejectionPolicy) {
+        this._executorRejectionPolicy = executorRejectionPolicy;
+    }
+
+    /**
+     * Gets if each request for the published WebService runs on its own virtual thread, where the JVM supports it.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @return the virtualThreads attribute of the executor, false by default
+     */
+    public Boolean getExecutorVirtualThreads() {
+        if (_executorVirtualThreads == null) {
+            _executorVirtualThreads = Boolean.valueOf(getChildAttribute("executor", "virtualThreads"));
+        }
+        return _executorVirtualThreads;
+    }
+
+    /**
+     * Sets if each request for the published WebService runs on its own virtual thread, where the JVM supports it.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @param executorVirtualThreads the executorVirtualThreads to set
+     */
+    public void setExecutorVirtualThreads(Boolean executorVirtualThreads) {
+        this._executorVirtualThreads = executorVirtualThreads;
+    }
+
+    /**
+     * Gets the maximum number of requests the published WebService handles at the same time.
+     * Further requests wait in the admission queue or are rejected with a SOAP Server fault.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @return the maxInFlight attribute of admission, or null if unlimited
+     */
+    public Integer getAdmissionMaxInFlight() {
+        if (_admissionMaxInFlight == null) {
+            String maxInFlight = getChildAttribute("admission", "maxInFlight");
+            if (maxInFlight != null) {
+                _admissionMaxInFlight = Integer.valueOf(maxInFlight);
+            }
+        }
+        return _admissionMaxInFlight;
+    }
+
+    /**
+     * Sets the maximum number of requests the published WebService handles at the same time.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @param admissionMaxInFlight the admissionMaxInFlight to set
+     */
+    public void setAdmissionMaxInFlight(Integer admissionMaxInFlight) {
+        this._admissionMaxInFlight = admissionMaxInFlight;
+    }
+
+    /**
+     * Gets the number of requests that may wait for another request to finish once maxInFlight is reached.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @return the queueSize attribute of admission, 0 by default
+     */
+    public int getAdmissionQueueSize() {
+        if (_admissionQueueSize == -1) {
+            String queueSize = getChildAttribute("admission", "queueSize");
+            _admissionQueueSize = (queueSize != null) ? Integer.parseInt(queueSize) : 0;
+        }
+        return _admissionQueueSize;
+    }
+
+    /**
+     * Sets the number of requests that may wait for another request to finish once maxInFlight is reached.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @param admissionQueueSize the admissionQueueSize to set
+     */
+    public void setAdmissionQueueSize(int admissionQueueSize) {
+        this._admissionQueueSize = admissionQueueSize;
+    }
+
+    /**
+     * Gets the milliseconds a queued request waits before it is rejected.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @return the queueTimeout attribute of admission, 1000 by default
+     */
+    public long getAdmissionQueueTimeout() {
+        if (_admissionQueueTimeout == -1) {
+            String queueTimeout = getChildAttribute("admission", "queueTimeout");
+            _admissionQueueTimeout = (queueTimeout != null) ? Long.parseLong(queueTimeout) : DEFAULT_ADMISSION_QUEUE_TIMEOUT;
+        }
+        return _admissionQueueTimeout;
+    }
+
+    /**
+     * Sets the milliseconds a queued request waits before it is rejected.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @param admissionQueueTimeout the admissionQueueTimeout to set
+     */
+    public void setAdmissionQueueTimeout(long admissionQueueTimeout) {
+        this._admissionQueueTimeout = admissionQueueTimeout;
+    }
+
+    /**
+     * Gets the seconds a rejected caller is advised to wait before retrying.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @return the retryAfter attribute of admission, 1 by default
+     */
+    public int getAdmissionRetryAfter() {
+        if (_admissionRetryAfter == -1) {
+            String retryAfter = getChildAttribute("admission", "retryAfter");
+            _admissionRetryAfter = (retryAfter != null) ? Integer.parseInt(retryAfter) : DEFAULT_ADMISSION_RETRY_AFTER;
+        }
+        return _admissionRetryAfter;
+    }
+
+    /**
+     * Sets the seconds a rejected caller is advised to wait before retrying.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @param admissionRetryAfter the admissionRetryAfter to set
+     */
+    public void setAdmissionRetryAfter(int admissionRetryAfter) {
+        this._admissionRetryAfter = admissionRetryAfter;
+    }
+
+    private String getChildAttribute(String child, String name) {
+        Configuration childConfig = getModelConfiguration().getFirstChild(child);
+        if (childConfig != null) {
+            return childConfig.getAttribute(name);
+        }
+        return null;
+    }
+
     /**
      * Gets the MessageComposer class name.
      * 
@@ -290,4 +611,381 @@ public class SOAPBindingModel extends V1BindingModel {
     public Boolean getPublishAsWS() {
         return _publishAsWS;
     }
+
+    /**
+     * Gets if the SOAPGateway completes requests asynchronously, without holding a thread per request.
+     * 
+     * If publishAsWS is true, the published WebService releases the HTTP request thread while the
+     * SwitchYard service runs. Otherwise, the remote WebService is invoked without blocking the thread
+     * that delivered the exchange and the reply is sent when the response arrives.
+     * 
+     * @return the async flag, false by default
+     */
+    public Boolean getAsync() {
+        if (_async == null) {
+            Configuration childConfig = getModelConfiguration().getFirstChild("async");
+            if (childConfig == null) {
+                _async = false;
+            } else {
+                _async = Boolean.valueOf(childConfig.getValue());
+            }
+        }
+        return _async;
+    }
+
+    /**
+     * Sets if the SOAPGateway completes requests asynchronously, without holding a thread per request.
+     * 
+     * @param async the async flag to set
+     */
+    public void setAsync(Boolean async) {
+        this._async = async;
+    }
+
+    /**
+     * Gets if the SOAPGateway passes the SOAP body payload on as a stream instead of parsing the envelope.
+     * 
+     * This is applicable only if publishAsWS is true. The payload reaches the service as a
+     * {@link org.switchyard.component.soap.util.LazyDOMSource} and any composer is bypassed.
+     * 
+     * @return the streaming flag, false by default
+     */
+    public Boolean getStreaming() {
+        if (_streaming == null) {
+            Configuration childConfig = getModelConfiguration().getFirstChild("streaming");
+            if (childConfig == null) {
+                _streaming = false;
+            } else {
+                _streaming = Boolean.valueOf(childConfig.getValue());
+            }
+        }
+        return _streaming;
+    }
+
+    /**
+     * Sets if the SOAPGateway passes the SOAP body payload on as a stream instead of parsing the envelope.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @param streaming the streaming flag to set
+     */
+    public void setStreaming(Boolean streaming) {
+        this._streaming = streaming;
+    }
+
+    /**
+     * Gets if the SOAPGateway relays whole SOAP envelopes without building a DOM.
+     * 
+     * A published WebService hands the envelope to the service as a
+     * {@link org.switchyard.component.soap.util.LazyDOMSource} and replies with the envelope the
+     * service returns. A WebService consumer sends such an envelope as is and returns the response
+     * envelope the same way. Composers and decomposers are bypassed.
+     * 
+     * @return the passthrough flag, false by default
+     */
+    public Boolean getPassthrough() {
+        if (_passthrough == null) {
+            Configuration childConfig = getModelConfiguration().getFirstChild("passthrough");
+            if (childConfig == null) {
+                _passthrough = false;
+            } else {
+                _passthrough = Boolean.valueOf(childConfig.getValue());
+            }
+        }
+        return _passthrough;
+    }
+
+    /**
+     * Sets if the SOAPGateway relays whole SOAP envelopes without building a DOM.
+     * 
+     * @param passthrough the passthrough flag to set
+     */
+    public void setPassthrough(Boolean passthrough) {
+        this._passthrough = passthrough;
+    }
+
+    /**
+     * Gets if SOAP headers are kept in envelopes entering SwitchYard through a passthrough SOAPGateway.
+     * 
+     * This is applicable only if passthrough is true.
+     * 
+     * @return the preserveHeaders flag, true by default
+     */
+    public Boolean getPreserveHeaders() {
+        if (_preserveHeaders == null) {
+            Configuration childConfig = getModelConfiguration().getFirstChild("preserveHeaders");
+            if (childConfig == null) {
+                _preserveHeaders = true;
+            } else {
+                _preserveHeaders = Boolean.valueOf(childConfig.getValue());
+            }
+        }
+        return _preserveHeaders;
+    }
+
+    /**
+     * Sets if SOAP headers are kept in envelopes entering SwitchYard through a passthrough SOAPGateway.
+     * 
+     * This is applicable only if passthrough is true.
+     * 
+     * @param preserveHeaders the preserveHeaders flag to set
+     */
+    public void setPreserveHeaders(Boolean preserveHeaders) {
+        this._preserveHeaders = preserveHeaders;
+    }
+
+    /**
+     * Gets if binary content is sent and received as MTOM/XOP attachments.
+     * 
+     * Attachments of a SOAP message are kept in the context of the SwitchYard Message as a
+     * Map of DataHandlers keyed by Content-ID, see {@link org.switchyard.component.soap.util.SOAPUtil#ATTACHMENTS}.
+     * A published WebService streams attachments it receives into memory or temporary files
+     * instead of inlining them in the SOAP body, which requires sharedServer to be true.
+     * 
+     * @return the mtom flag, false by default
+     */
+    public Boolean getMtom() {
+        if (_mtom == null) {
+            Configuration childConfig = getModelConfiguration().getFirstChild("mtom");
+            if (childConfig == null) {
+                _mtom = false;
+            } else {
+                _mtom = Boolean.valueOf(childConfig.getValue());
+            }
+        }
+        return _mtom;
+    }
+
+    /**
+     * Sets if binary content is sent and received as MTOM/XOP attachments.
+     * 
+     * @param mtom the mtom flag to set
+     */
+    public void setMtom(Boolean mtom) {
+        this._mtom = mtom;
+    }
+
+    /**
+     * Gets the size in bytes up to which a received attachment is kept in memory, larger ones
+     * are spilled to a temporary file.
+     * 
+     * This is applicable only if publishAsWS and mtom are true.
+     * 
+     * @return the threshold attribute of attachmentSpill, 1 MB by default
+     */
+    public int getAttachmentSpillThreshold() {
+        if (_attachmentSpillThreshold == -1) {
+            String threshold = getChildAttribute("attachmentSpill", "threshold");
+            _attachmentSpillThreshold = (threshold != null) ? Integer.parseInt(threshold) : DEFAULT_ATTACHMENT_SPILL_THRESHOLD;
+        }
+        return _attachmentSpillThreshold;
+    }
+
+    /**
+     * Sets the size in bytes up to which a received attachment is kept in memory.
+     * 
+     * This is applicable only if publishAsWS and mtom are true.
+     * 
+     * @param attachmentSpillThreshold the attachmentSpillThreshold to set
+     */
+    public void setAttachmentSpillThreshold(int attachmentSpillThreshold) {
+        this._attachmentSpillThreshold = attachmentSpillThreshold;
+    }
+
+    /**
+     * Gets the directory of the temporary files that received attachments are spilled to.
+     * 
+     * This is applicable only if publishAsWS and mtom are true.
+     * 
+     * @return the directory attribute of attachmentSpill, or null for the default temporary directory
+     */
+    public String getAttachmentSpillDirectory() {
+        if (_attachmentSpillDirectory == null) {
+            _attachmentSpillDirectory = getChildAttribute("attachmentSpill", "directory");
+        }
+        return _attachmentSpillDirectory;
+    }
+
+    /**
+     * Sets the directory of the temporary files that received attachments are spilled to.
+     * 
+     * This is applicable only if publishAsWS and mtom are true.
+     * 
+     * @param attachmentSpillDirectory the attachmentSpillDirectory to set
+     */
+    public void setAttachmentSpillDirectory(String attachmentSpillDirectory) {
+        this._attachmentSpillDirectory = attachmentSpillDirectory;
+    }
+
+    /**
+     * Gets the time in milliseconds to wait for a reply from the SwitchYard service.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @return the timeout, 15 seconds by default
+     */
+    public long getTimeout() {
+        if (_timeout == -1) {
+            Configuration childConfig = getModelConfiguration().getFirstChild("timeout");
+            if (childConfig == null) {
+                _timeout = DEFAULT_TIMEOUT;
+            } else {
+                _timeout = Long.parseLong(childConfig.getValue());
+            }
+        }
+        return _timeout;
+    }
+
+    /**
+     * Sets the time in milliseconds to wait for a reply from the SwitchYard service.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @param timeout the timeout to set
+     */
+    public void setTimeout(long timeout) {
+        this._timeout = timeout;
+    }
+
+    /**
+     * Gets the reply timeouts that override the binding timeout for individual WSDL operations.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @return the timeouts in milliseconds keyed by operation name
+     */
+    public Map<String, Long> getOperationTimeouts() {
+        if (_operationTimeouts == null) {
+            _operationTimeouts = new HashMap<String, Long>();
+            for (Configuration childConfig : getModelConfiguration().getChildren("operationTimeout")) {
+                _operationTimeouts.put(childConfig.getAttribute("operation"), Long.valueOf(childConfig.getValue()));
+            }
+        }
+        return _operationTimeouts;
+    }
+
+    /**
+     * Sets the reply timeout for a WSDL operation, overriding the binding timeout.
+     * 
+     * This is applicable only if publishAsWS is true.
+     * 
+     * @param operationName the WSDL operation name
+     * @param timeout the timeout to set
+     */
+    public void setOperationTimeout(String operationName, long timeout) {
+        getOperationTimeouts().put(operationName, timeout);
+    }
+
+    /**
+     * Gets the time in milliseconds to wait for a connection to the remote WebService.
+     * 
+     * This is applicable only if publishAsWS is false.
+     * 
+     * @return the connectTimeout, or null to use the JAX-WS default
+     */
+    public Integer getConnectTimeout() {
+        if (_connectTimeout == null) {
+            Configuration childConfig = getModelConfiguration().getFirstChild("connectTimeout");
+            if (childConfig != null) {
+                _connectTimeout = Integer.valueOf(childConfig.getValue());
+            }
+        }
+        return _connectTimeout;
+    }
+
+    /**
+     * Sets the time in milliseconds to wait for a connection to the remote WebService.
+     * 
+     * This is applicable only if publishAsWS is false.
+     * 
+     * @param connectTimeout the connectTimeout to set
+     */
+    public void setConnectTimeout(Integer connectTimeout) {
+        this._connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Gets the time in milliseconds to wait for a reply from the remote WebService.
+     * 
+     * This is applicable only if publishAsWS is false.
+     * 
+     * @return the readTimeout, or null to use the JAX-WS default
+     */
+    public Integer getReadTimeout() {
+        if (_readTimeout == null) {
+            Configuration childConfig = getModelConfiguration().getFirstChild("readTimeout");
+            if (childConfig != null) {
+                _readTimeout = Integer.valueOf(childConfig.getValue());
+            }
+        }
+        return _readTimeout;
+    }
+
+    /**
+     * Sets the time in milliseconds to wait for a reply from the remote WebService.
+     * 
+     * This is applicable only if publishAsWS is false.
+     * 
+     * @param readTimeout the readTimeout to set
+     */
+    public void setReadTimeout(Integer readTimeout) {
+        this._readTimeout = readTimeout;
+    }
+
+    /**
+     * Gets the maximum number of concurrent requests to the remote WebService.
+     * 
+     * This is applicable only if publishAsWS is false.
+     * 
+     * @return the maxConnections, or null if unbounded
+     */
+    public Integer getMaxConnections() {
+        if (_maxConnections == null) {
+            Configuration childConfig = getModelConfiguration().getFirstChild("maxConnections");
+            if (childConfig != null) {
+                _maxConnections = Integer.valueOf(childConfig.getValue());
+            }
+        }
+        return _maxConnections;
+    }
+
+    /**
+     * Sets the maximum number of concurrent requests to the remote WebService.
+     * 
+     * This is applicable only if publishAsWS is false.
+     * 
+     * @param maxConnections the maxConnections to set
+     */
+    public void setMaxConnections(Integer maxConnections) {
+        this._maxConnections = maxConnections;
+    }
+
+    /**
+     * Gets the HTTP chunk size in bytes used when sending requests to the remote WebService.
+     * 
+     * This is applicable only if publishAsWS is false.
+     * 
+     * @return the chunkSize, 0 if chunking is disabled, or null for the default of 8192 bytes if mtom is true
+     * and of the JAX-WS runtime otherwise
+     */
+    public Integer getChunkSize() {
+        if (_chunkSize == null) {
+            Configuration childConfig = getModelConfiguration().getFirstChild("chunkSize");
+            if (childConfig != null) {
+                _chunkSize = Integer.valueOf(childConfig.getValue());
+            }
+        }
+        return _chunkSize;
+    }
+
+    /**
+     * Sets the HTTP chunk size in bytes used when sending requests to the remote WebService.
+     * 
+     * This is applicable only if publishAsWS is false.
+     * 
+     * @param chunkSize the chunkSize to set
+     */
+    public void setChunkSize(Integer chunkSize) {
+        this._chunkSize = chunkSize;
+    }
 }
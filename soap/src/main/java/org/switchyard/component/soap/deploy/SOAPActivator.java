@@ -19,11 +19,22 @@
 
 package org.switchyard.component.soap.deploy;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import javax.xml.namespace.QName;
 
+import org.apache.log4j.Logger;
 import org.switchyard.ExchangeHandler;
 import org.switchyard.ServiceReference;
 import org.switchyard.component.soap.InboundHandler;
@@ -31,6 +42,8 @@ import org.switchyard.component.soap.OutboundHandler;
 import org.switchyard.component.soap.WebServiceConsumeException;
 import org.switchyard.component.soap.WebServicePublishException;
 import org.switchyard.component.soap.config.model.SOAPBindingModel;
+import org.switchyard.component.soap.metrics.GatewayMetrics;
+import org.switchyard.component.soap.util.NamedThreadFactory;
 import org.switchyard.config.model.Model;
 import org.switchyard.config.model.composite.BindingModel;
 import org.switchyard.config.model.composite.CompositeServiceModel;
@@ -39,13 +52,40 @@ import org.switchyard.deploy.Activator;
 
 /**
  * SOAP Activator.
+ * 
+ * The WSDL reading and client setup for each gateway is started in the background as soon as
+ * the gateway is initialised, so that gateways are prepared in parallel. Starting a gateway waits
+ * for its own preparation and repeats it if it failed, so errors are reported by start as before.
+ * 
+ * The request metrics of each started gateway are registered as MBeans with the platform MBean
+ * server, under the org.switchyard.component.soap domain, with one MBean per operation.
  */
 public class SOAPActivator implements Activator {
 
-    private Map<QName, InboundHandler> _inboundGateways = 
-        new HashMap<QName, InboundHandler>();
-    private Map<QName, OutboundHandler> _outboundGateways = 
-        new HashMap<QName, OutboundHandler>();
+    private static final Logger LOGGER = Logger.getLogger(SOAPActivator.class);
+    private static final int MAX_STARTUP_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final long STARTUP_THREAD_KEEPALIVE = 60;
+    private static final String METRICS_DOMAIN = "org.switchyard.component.soap";
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private ConcurrentMap<QName, InboundHandler> _inboundGateways = 
+        new ConcurrentHashMap<QName, InboundHandler>();
+    private ConcurrentMap<QName, OutboundHandler> _outboundGateways = 
+        new ConcurrentHashMap<QName, OutboundHandler>();
+    private ConcurrentMap<QName, Future<Void>> _preparations =
+        new ConcurrentHashMap<QName, Future<Void>>();
+    private ThreadPoolExecutor _startupExecutor;
+
+    /**
+     * Constructor.
+     */
+    public SOAPActivator() {
+        _startupExecutor = new ThreadPoolExecutor(MAX_STARTUP_THREADS, MAX_STARTUP_THREADS,
+                STARTUP_THREAD_KEEPALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new NamedThreadFactory("SOAPActivator-" + POOL_NUMBER.incrementAndGet() + "-thread-", true));
+        // Let the threads go once all gateways are prepared
+        _startupExecutor.allowCoreThreadTimeOut(true);
+    }
 
 
     @Override
@@ -53,8 +93,14 @@ public class SOAPActivator implements Activator {
         if (config instanceof CompositeServiceModel) {
             for (BindingModel binding : ((CompositeServiceModel)config).getBindings()) {
                 if (binding instanceof SOAPBindingModel) {
-                    InboundHandler handler = new InboundHandler((SOAPBindingModel)binding);
+                    final InboundHandler handler = new InboundHandler((SOAPBindingModel)binding);
                     _inboundGateways.put(name, handler);
+                    prepare(name, new Callable<Void>() {
+                        public Void call() throws Exception {
+                            handler.prepare();
+                            return null;
+                        }
+                    });
                     return handler;
                 }
             }
@@ -63,8 +109,14 @@ public class SOAPActivator implements Activator {
         if (config instanceof CompositeReferenceModel) {
             for (BindingModel binding : ((CompositeReferenceModel)config).getBindings()) {
                 if (binding instanceof SOAPBindingModel) {
-                    OutboundHandler handler = new OutboundHandler((SOAPBindingModel)binding);
+                    final OutboundHandler handler = new OutboundHandler((SOAPBindingModel)binding);
                     _outboundGateways.put(name, handler);
+                    prepare(name, new Callable<Void>() {
+                        public Void call() throws Exception {
+                            handler.start();
+                            return null;
+                        }
+                    });
                     return handler;
                 }
             }
@@ -76,37 +128,92 @@ public class SOAPActivator implements Activator {
 
     @Override
     public void start(ServiceReference service) {
-        if (_inboundGateways.containsKey(service.getName())) {
+        awaitPreparation(service.getName());
+        InboundHandler inboundHandler = _inboundGateways.get(service.getName());
+        if (inboundHandler != null) {
             try {
-                _inboundGateways.get(service.getName()).start(service);
+                inboundHandler.start(service);
             } catch (WebServicePublishException ex) {
                 throw new RuntimeException(
                         "Failed to start inbound gateway for service " + service.getName(), ex);
             }
+            registerMetrics(service.getName(), "InboundGateway", inboundHandler.getMetrics());
         }
-        if (_outboundGateways.containsKey(service.getName())) {
+        OutboundHandler outboundHandler = _outboundGateways.get(service.getName());
+        if (outboundHandler != null) {
             try {
-                _outboundGateways.get(service.getName()).start();
+                outboundHandler.start();
             } catch (WebServiceConsumeException ex) {
                 throw new RuntimeException(
                         "Failed to start outbound gateway for service " + service.getName(), ex);
             }
+            registerMetrics(service.getName(), "OutboundGateway", outboundHandler.getMetrics());
         }
     }
 
     @Override
     public void stop(ServiceReference service) {
-        if (_inboundGateways.containsKey(service.getName())) {
-                _inboundGateways.get(service.getName()).stop();
+        InboundHandler inboundHandler = _inboundGateways.get(service.getName());
+        if (inboundHandler != null) {
+                inboundHandler.getMetrics().unregister();
+                inboundHandler.stop();
         }
-        if (_outboundGateways.containsKey(service.getName())) {
-                _outboundGateways.get(service.getName()).stop();
+        OutboundHandler outboundHandler = _outboundGateways.get(service.getName());
+        if (outboundHandler != null) {
+                outboundHandler.getMetrics().unregister();
+                outboundHandler.stop();
         }
     }
 
     @Override
     public void destroy(ServiceReference service) {
+        Future<Void> preparation = _preparations.remove(service.getName());
+        if (preparation != null) {
+            preparation.cancel(true);
+        }
         _inboundGateways.remove(service.getName());
         _outboundGateways.remove(service.getName());
     }
+
+    private void prepare(final QName name, final Callable<Void> task) {
+        // WSDLs may be classpath resources of the deployment
+        final ClassLoader tccl = Thread.currentThread().getContextClassLoader();
+        _preparations.put(name, _startupExecutor.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                Thread thread = Thread.currentThread();
+                ClassLoader original = thread.getContextClassLoader();
+                thread.setContextClassLoader(tccl);
+                try {
+                    return task.call();
+                } finally {
+                    thread.setContextClassLoader(original);
+                }
+            }
+        }));
+    }
+
+    private void registerMetrics(final QName name, final String type, final GatewayMetrics metrics) {
+        try {
+            ObjectName objectName = new ObjectName(METRICS_DOMAIN + ":type=" + type + ",service=" + ObjectName.quote(name.toString()));
+            metrics.register(ManagementFactory.getPlatformMBeanServer(), objectName);
+        } catch (JMException jme) {
+            // Metrics are not worth failing the deployment for
+            LOGGER.warn("Unable to register metrics of gateway for service " + name, jme);
+        }
+    }
+
+    private void awaitPreparation(final QName name) {
+        Future<Void> preparation = _preparations.remove(name);
+        if (preparation == null) {
+            return;
+        }
+        try {
+            preparation.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ee) {
+            // Start repeats the failed step, which reports the error
+            LOGGER.debug("Background preparation of gateway for service " + name + " failed", ee.getCause());
+        }
+    }
 }
@@ -0,0 +1,247 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The metrics of a SOAP gateway and its operations. Once registered, operations that get
+ * metrics later are registered too.
+ */
+public class GatewayMetrics implements GatewayMetricsMBean {
+    private static final Logger LOGGER = Logger.getLogger(GatewayMetrics.class);
+
+    private final ConcurrentMap<String, OperationMetrics> _operations = new ConcurrentHashMap<String, OperationMetrics>();
+    private final AtomicLong _unrouted = new AtomicLong();
+    private final Gauges _gauges;
+    private MBeanServer _server;
+    private ObjectName _objectName;
+
+    /**
+     * The current load of a gateway.
+     */
+    public interface Gauges {
+
+        /**
+         * Get the number of requests waiting for a thread or connection.
+         * @return the queue depth
+         */
+        int getQueueDepth();
+
+        /**
+         * Get the number of threads or connections in use.
+         * @return the active count
+         */
+        int getActiveThreads();
+
+        /**
+         * Get the number of requests waiting to be admitted.
+         * @return the admission queue depth
+         */
+        int getAdmissionQueueDepth();
+
+        /**
+         * Get the number of requests rejected because the gateway was overloaded.
+         * @return the rejected request count
+         */
+        long getRejectedCount();
+    }
+
+    /**
+     * Create the metrics of a gateway.
+     * @param gauges the current load of the gateway
+     */
+    public GatewayMetrics(final Gauges gauges) {
+        _gauges = gauges;
+    }
+
+    /**
+     * Get the metrics of an operation, creating them if needed.
+     * @param name the operation name
+     * @return the operation metrics
+     */
+    public OperationMetrics getOperation(final String name) {
+        OperationMetrics metrics = _operations.get(name);
+        if (metrics == null) {
+            OperationMetrics created = new OperationMetrics(name);
+            metrics = _operations.putIfAbsent(name, created);
+            if (metrics == null) {
+                metrics = created;
+                register(created);
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Record a request that did not match any operation.
+     */
+    public void unrouted() {
+        _unrouted.incrementAndGet();
+    }
+
+    /**
+     * Register these metrics, and those of every operation, with an MBean server.
+     * @param server the MBean server
+     * @param objectName the name of the gateway; operations add an operation key to it
+     * @throws JMException if the gateway could not be registered
+     */
+    public synchronized void register(final MBeanServer server, final ObjectName objectName) throws JMException {
+        server.registerMBean(this, objectName);
+        _server = server;
+        _objectName = objectName;
+        for (OperationMetrics metrics : _operations.values()) {
+            register(metrics);
+        }
+    }
+
+    /**
+     * Unregister these metrics, and those of every operation, from the MBean server.
+     */
+    public synchronized void unregister() {
+        if (_server == null) {
+            return;
+        }
+        for (OperationMetrics metrics : _operations.values()) {
+            unregister(getObjectName(metrics));
+        }
+        unregister(_objectName);
+        _server = null;
+        _objectName = null;
+    }
+
+    private synchronized void register(final OperationMetrics metrics) {
+        if (_server == null) {
+            return;
+        }
+        try {
+            ObjectName objectName = getObjectName(metrics);
+            if (!_server.isRegistered(objectName)) {
+                _server.registerMBean(metrics, objectName);
+            }
+        } catch (JMException jme) {
+            LOGGER.warn("Unable to register metrics of operation " + metrics.getName(), jme);
+        }
+    }
+
+    private void unregister(final ObjectName objectName) {
+        try {
+            if ((objectName != null) && _server.isRegistered(objectName)) {
+                _server.unregisterMBean(objectName);
+            }
+        } catch (JMException jme) {
+            LOGGER.warn("Unable to unregister " + objectName, jme);
+        }
+    }
+
+    private ObjectName getObjectName(final OperationMetrics metrics) {
+        try {
+            return new ObjectName(_objectName + ",operation=" + ObjectName.quote(metrics.getName()));
+        } catch (JMException jme) {
+            LOGGER.warn("Invalid metrics name for operation " + metrics.getName(), jme);
+            return null;
+        }
+    }
+
+    @Override
+    public String[] getOperationNames() {
+        List<String> names = new ArrayList<String>(_operations.keySet());
+        return names.toArray(new String[names.size()]);
+    }
+
+    @Override
+    public long getRequestCount() {
+        long count = 0;
+        for (OperationMetrics metrics : _operations.values()) {
+            count += metrics.getRequestCount();
+        }
+        return count;
+    }
+
+    @Override
+    public long getFaultCount() {
+        long count = 0;
+        for (OperationMetrics metrics : _operations.values()) {
+            count += metrics.getFaultCount();
+        }
+        return count;
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        long count = 0;
+        for (OperationMetrics metrics : _operations.values()) {
+            count += metrics.getTimeoutCount();
+        }
+        return count;
+    }
+
+    @Override
+    public int getInFlight() {
+        int count = 0;
+        for (OperationMetrics metrics : _operations.values()) {
+            count += metrics.getInFlight();
+        }
+        return count;
+    }
+
+    @Override
+    public long getUnroutedCount() {
+        return _unrouted.get();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return _gauges.getQueueDepth();
+    }
+
+    @Override
+    public int getActiveThreads() {
+        return _gauges.getActiveThreads();
+    }
+
+    @Override
+    public int getAdmissionQueueDepth() {
+        return _gauges.getAdmissionQueueDepth();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return _gauges.getRejectedCount();
+    }
+
+    @Override
+    public void reset() {
+        _unrouted.set(0);
+        for (OperationMetrics metrics : _operations.values()) {
+            metrics.reset();
+        }
+    }
+}
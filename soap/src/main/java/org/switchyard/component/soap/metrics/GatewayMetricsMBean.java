@@ -0,0 +1,91 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap.metrics;
+
+/**
+ * Management interface of the metrics of a SOAP gateway, summed over its operations.
+ */
+public interface GatewayMetricsMBean {
+
+    /**
+     * Get the names of the operations that have metrics.
+     * @return the operation names
+     */
+    String[] getOperationNames();
+
+    /**
+     * Get the number of requests received or sent.
+     * @return the request count
+     */
+    long getRequestCount();
+
+    /**
+     * Get the number of requests that ended in a fault, not counting timeouts.
+     * @return the fault count
+     */
+    long getFaultCount();
+
+    /**
+     * Get the number of requests that timed out.
+     * @return the timeout count
+     */
+    long getTimeoutCount();
+
+    /**
+     * Get the number of requests being processed.
+     * @return the in-flight count
+     */
+    int getInFlight();
+
+    /**
+     * Get the number of requests that did not match any operation.
+     * @return the unrouted request count
+     */
+    long getUnroutedCount();
+
+    /**
+     * Get the number of requests waiting for a thread or connection.
+     * @return the queue depth
+     */
+    int getQueueDepth();
+
+    /**
+     * Get the number of threads or connections in use.
+     * @return the active count
+     */
+    int getActiveThreads();
+
+    /**
+     * Get the number of requests waiting to be admitted.
+     * @return the admission queue depth, 0 if the gateway does not limit admission
+     */
+    int getAdmissionQueueDepth();
+
+    /**
+     * Get the number of requests rejected because the gateway was overloaded.
+     * @return the rejected request count
+     */
+    long getRejectedCount();
+
+    /**
+     * Reset the counters and histograms of every operation.
+     */
+    void reset();
+}
@@ -0,0 +1,135 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative long values with log-linear buckets, in the manner of an
+ * HdrHistogram. Every power of two is split into 16 buckets, so a percentile is reported
+ * within 1/16 of the recorded value at any magnitude. Recording takes no lock.
+ *
+ * Readings are not a consistent snapshot while values are being recorded, which is fine
+ * for monitoring.
+ */
+public final class Histogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    private static final double PERCENT = 100.0;
+
+    private final AtomicLongArray _counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong _count = new AtomicLong();
+    private final AtomicLong _sum = new AtomicLong();
+    private final AtomicLong _max = new AtomicLong();
+
+    /**
+     * Record a value.
+     * @param value the value, negative values are recorded as 0
+     */
+    public void record(final long value) {
+        final long v = Math.max(0, value);
+        _counts.incrementAndGet(indexOf(v));
+        _count.incrementAndGet();
+        _sum.addAndGet(v);
+        long max = _max.get();
+        while (v > max && !_max.compareAndSet(max, v)) {
+            max = _max.get();
+        }
+    }
+
+    /**
+     * Get the number of recorded values.
+     * @return the count
+     */
+    public long getCount() {
+        return _count.get();
+    }
+
+    /**
+     * Get the mean of the recorded values.
+     * @return the mean, or 0 if nothing was recorded
+     */
+    public double getMean() {
+        final long count = _count.get();
+        return (count > 0) ? (double) _sum.get() / count : 0;
+    }
+
+    /**
+     * Get the largest recorded value.
+     * @return the maximum, or 0 if nothing was recorded
+     */
+    public long getMax() {
+        return _max.get();
+    }
+
+    /**
+     * Get the value that the given percentage of recorded values are less than or equal to.
+     * @param percentile the percentile, between 0 and 100
+     * @return the highest value of the bucket the percentile falls in, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(final double percentile) {
+        final long count = _count.get();
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, PERCENT) / PERCENT * count));
+        final long max = _max.get();
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += _counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Forget all recorded values. Values recorded meanwhile may be partly kept.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            _counts.set(i, 0);
+        }
+        _count.set(0);
+        _sum.set(0);
+        _max.set(0);
+    }
+
+    static int indexOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        // The bits below the highest one bit select the sub bucket
+        final int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long highestValueOf(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        final long lowest = ((long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1)))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
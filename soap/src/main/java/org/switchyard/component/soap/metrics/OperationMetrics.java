@@ -0,0 +1,190 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The metrics of one operation of a SOAP gateway. A request is recorded by calling begin()
+ * and then either end() or timedOut() with the value begin() returned.
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private final String _name;
+    private final AtomicLong _requests = new AtomicLong();
+    private final AtomicLong _faults = new AtomicLong();
+    private final AtomicLong _timeouts = new AtomicLong();
+    private final AtomicInteger _inFlight = new AtomicInteger();
+    private final Histogram _latency = new Histogram();
+    private final Histogram _payloadSize = new Histogram();
+
+    /**
+     * Create the metrics of an operation.
+     * @param name the operation name
+     */
+    public OperationMetrics(final String name) {
+        _name = name;
+    }
+
+    /**
+     * Record the start of a request.
+     * @return the start time to pass to end() or timedOut()
+     */
+    public long begin() {
+        _requests.incrementAndGet();
+        _inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the end of a request.
+     * @param start the value returned by begin()
+     * @param fault true if the request ended in a fault
+     */
+    public void end(final long start, final boolean fault) {
+        _latency.record(System.nanoTime() - start);
+        if (fault) {
+            _faults.incrementAndGet();
+        }
+        _inFlight.decrementAndGet();
+    }
+
+    /**
+     * Record the end of a request that timed out.
+     * @param start the value returned by begin()
+     */
+    public void timedOut(final long start) {
+        _latency.record(System.nanoTime() - start);
+        _timeouts.incrementAndGet();
+        _inFlight.decrementAndGet();
+    }
+
+    /**
+     * Record the size of a request or response payload.
+     * @param size the size in bytes, ignored if negative because it is not known
+     */
+    public void recordPayloadSize(final long size) {
+        if (size >= 0) {
+            _payloadSize.record(size);
+        }
+    }
+
+    /**
+     * Get the latency histogram, in nanoseconds.
+     * @return the latency histogram
+     */
+    public Histogram getLatency() {
+        return _latency;
+    }
+
+    /**
+     * Get the payload size histogram, in bytes.
+     * @return the payload size histogram
+     */
+    public Histogram getPayloadSize() {
+        return _payloadSize;
+    }
+
+    @Override
+    public String getName() {
+        return _name;
+    }
+
+    @Override
+    public long getRequestCount() {
+        return _requests.get();
+    }
+
+    @Override
+    public long getFaultCount() {
+        return _faults.get();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return _timeouts.get();
+    }
+
+    @Override
+    public int getInFlight() {
+        return _inFlight.get();
+    }
+
+    @Override
+    public double getLatencyMean() {
+        return _latency.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLatency50thPercentile() {
+        return _latency.getValueAtPercentile(50.0) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLatency90thPercentile() {
+        return _latency.getValueAtPercentile(90.0) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLatency99thPercentile() {
+        return _latency.getValueAtPercentile(99.0) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLatency999thPercentile() {
+        return _latency.getValueAtPercentile(99.9) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLatencyMax() {
+        return _latency.getMax() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getPayloadSizeMean() {
+        return _payloadSize.getMean();
+    }
+
+    @Override
+    public long getPayloadSize50thPercentile() {
+        return _payloadSize.getValueAtPercentile(50.0);
+    }
+
+    @Override
+    public long getPayloadSize99thPercentile() {
+        return _payloadSize.getValueAtPercentile(99.0);
+    }
+
+    @Override
+    public long getPayloadSizeMax() {
+        return _payloadSize.getMax();
+    }
+
+    @Override
+    public void reset() {
+        _requests.set(0);
+        _faults.set(0);
+        _timeouts.set(0);
+        _latency.reset();
+        _payloadSize.reset();
+    }
+}
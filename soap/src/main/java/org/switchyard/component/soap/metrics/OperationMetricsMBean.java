@@ -0,0 +1,122 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap.metrics;
+
+/**
+ * Management interface of the metrics of one operation of a SOAP gateway. Latencies are in
+ * milliseconds and payload sizes in bytes.
+ */
+public interface OperationMetricsMBean {
+
+    /**
+     * Get the name of the operation.
+     * @return the operation name
+     */
+    String getName();
+
+    /**
+     * Get the number of requests received or sent.
+     * @return the request count
+     */
+    long getRequestCount();
+
+    /**
+     * Get the number of requests that ended in a fault, not counting timeouts.
+     * @return the fault count
+     */
+    long getFaultCount();
+
+    /**
+     * Get the number of requests that timed out.
+     * @return the timeout count
+     */
+    long getTimeoutCount();
+
+    /**
+     * Get the number of requests being processed.
+     * @return the in-flight count
+     */
+    int getInFlight();
+
+    /**
+     * Get the mean latency.
+     * @return the mean latency
+     */
+    double getLatencyMean();
+
+    /**
+     * Get the median latency.
+     * @return the 50th percentile latency
+     */
+    double getLatency50thPercentile();
+
+    /**
+     * Get the 90th percentile latency.
+     * @return the 90th percentile latency
+     */
+    double getLatency90thPercentile();
+
+    /**
+     * Get the 99th percentile latency.
+     * @return the 99th percentile latency
+     */
+    double getLatency99thPercentile();
+
+    /**
+     * Get the 99.9th percentile latency.
+     * @return the 99.9th percentile latency
+     */
+    double getLatency999thPercentile();
+
+    /**
+     * Get the largest latency.
+     * @return the maximum latency
+     */
+    double getLatencyMax();
+
+    /**
+     * Get the mean payload size.
+     * @return the mean payload size
+     */
+    double getPayloadSizeMean();
+
+    /**
+     * Get the median payload size.
+     * @return the 50th percentile payload size
+     */
+    long getPayloadSize50thPercentile();
+
+    /**
+     * Get the 99th percentile payload size.
+     * @return the 99th percentile payload size
+     */
+    long getPayloadSize99thPercentile();
+
+    /**
+     * Get the largest payload size.
+     * @return the maximum payload size
+     */
+    long getPayloadSizeMax();
+
+    /**
+     * Reset the counters and histograms, but not the in-flight count.
+     */
+    void reset();
+}
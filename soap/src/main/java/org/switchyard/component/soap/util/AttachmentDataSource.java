@@ -0,0 +1,197 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import javax.activation.DataSource;
+
+/**
+ * A DataSource over attachment content read once from a stream. Content up to a threshold
+ * is kept in memory, anything larger is spilled to a temporary file so it is never held
+ * on the heap as a whole.
+ */
+public class AttachmentDataSource implements DataSource {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final String _contentType;
+    private final String _name;
+    private byte[] _content;
+    private File _file;
+    private long _size;
+    private boolean _retained;
+
+    private AttachmentDataSource(final String contentType, final String name) {
+        _contentType = (contentType != null) ? contentType : "application/octet-stream";
+        _name = name;
+    }
+
+    /**
+     * Read attachment content, spilling it to a temporary file once it exceeds the threshold.
+     * @param in the content stream, read to its end
+     * @param contentType the MIME type of the content
+     * @param name the name of the attachment, such as its Content-ID
+     * @param threshold the number of bytes kept in memory
+     * @param directory the directory for the temporary file, or null for the default temporary directory
+     * @return the DataSource
+     * @throws IOException if the content could not be read or spilled
+     */
+    public static AttachmentDataSource read(final InputStream in, final String contentType, final String name,
+            final int threshold, final File directory) throws IOException {
+        AttachmentDataSource source = new AttachmentDataSource(contentType, name);
+        byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, threshold + 1L)];
+        int length = 0;
+        int read = in.read(buffer);
+        while (read > -1) {
+            length += read;
+            if (length > threshold) {
+                source.spill(buffer, length, in, directory);
+                return source;
+            }
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, (int) Math.min(buffer.length * 2L, threshold + 1L));
+            }
+            read = in.read(buffer, length, buffer.length - length);
+        }
+        source._content = Arrays.copyOf(buffer, length);
+        source._size = length;
+        return source;
+    }
+
+    private void spill(final byte[] head, final int length, final InputStream in, final File directory) throws IOException {
+        _file = File.createTempFile("switchyard-attachment-", ".tmp", directory);
+        OutputStream out = new FileOutputStream(_file);
+        try {
+            out.write(head, 0, length);
+            long size = length;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read = in.read(buffer);
+            while (read > -1) {
+                out.write(buffer, 0, read);
+                size += read;
+                read = in.read(buffer);
+            }
+            _size = size;
+        } catch (IOException ioe) {
+            out.close();
+            dispose();
+            throw ioe;
+        }
+        out.close();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized InputStream getInputStream() throws IOException {
+        if (_content != null) {
+            return new ByteArrayInputStream(_content);
+        }
+        if (_file == null) {
+            throw new IOException("Attachment '" + _name + "' has been disposed");
+        }
+        return new FileInputStream(_file);
+    }
+
+    /**
+     * Attachments are read only.
+     * @return never
+     * @throws IOException always
+     */
+    public OutputStream getOutputStream() throws IOException {
+        throw new IOException("Attachment '" + _name + "' is read only");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getContentType() {
+        return _contentType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getName() {
+        return _name;
+    }
+
+    /**
+     * Get the size of the content.
+     * @return the size in bytes
+     */
+    public long getSize() {
+        return _size;
+    }
+
+    /**
+     * Check if the content was spilled to a temporary file.
+     * @return true if the content is in a file
+     */
+    public synchronized boolean isSpilled() {
+        return _file != null;
+    }
+
+    /**
+     * Keep the content past the request it arrived with, until its new owner disposes of it.
+     */
+    public synchronized void retain() {
+        _retained = true;
+    }
+
+    /**
+     * Check if the content is kept past the request it arrived with.
+     * @return true if the owner of the content disposes of it
+     */
+    public synchronized boolean isRetained() {
+        return _retained;
+    }
+
+    /**
+     * Release the content, deleting the temporary file if there is one. Streams that are
+     * already open may still be readable, depending on the platform.
+     */
+    public synchronized void dispose() {
+        _content = null;
+        if (_file != null) {
+            if (!_file.delete() && _file.exists()) {
+                _file.deleteOnExit();
+            }
+            _file = null;
+        }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        // Only a safety net, the owner of the content disposes of it when done
+        try {
+            dispose();
+        } finally {
+            super.finalize();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+ 
+package org.switchyard.component.soap.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+/**
+ * A DOMSource over buffered XML bytes that only builds the DOM when {@link #getNode()} is called.
+ * Until then the content can be read as a stream, without materialising a tree.
+ */
+public class LazyDOMSource extends DOMSource {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final byte[] _content;
+
+    /**
+     * Create a LazyDOMSource over serialized XML.
+     * @param content the XML bytes
+     */
+    public LazyDOMSource(final byte[] content) {
+        _content = content;
+    }
+
+    /**
+     * Buffer a Source without building a DOM.
+     * @param source the Source to read
+     * @return the LazyDOMSource
+     * @throws IOException if the source stream could not be read
+     * @throws TransformerException if the source could not be serialized
+     */
+    public static LazyDOMSource create(final Source source) throws IOException, TransformerException {
+        if (source instanceof LazyDOMSource) {
+            return (LazyDOMSource) source;
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+        if ((source instanceof StreamSource) && (((StreamSource) source).getInputStream() != null)) {
+            final InputStream is = ((StreamSource) source).getInputStream();
+            try {
+                final byte[] buffer = new byte[BUFFER_SIZE];
+                int len = is.read(buffer);
+                while (len > -1) {
+                    bytes.write(buffer, 0, len);
+                    len = is.read(buffer);
+                }
+            } finally {
+                is.close();
+            }
+        } else {
+            XMLHelper.transform(source, new StreamResult(bytes));
+        }
+        final LazyDOMSource lazySource = new LazyDOMSource(bytes.toByteArray());
+        lazySource.setSystemId(source.getSystemId());
+        return lazySource;
+    }
+
+    /**
+     * Get the QName of the root element by streaming up to its start tag.
+     * @return the root element QName, or null if there is none
+     * @throws XMLStreamException if the content is not well formed
+     */
+    public QName getRootQName() throws XMLStreamException {
+        final XMLStreamReader reader = XMLHelper.getXMLStreamReader(getInputStream());
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    return reader.getName();
+                }
+            }
+            return null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Get a stream over the serialized XML.
+     * @return the input stream
+     */
+    public InputStream getInputStream() {
+        return new ByteArrayInputStream(_content);
+    }
+
+    /**
+     * Get the size of the serialized XML.
+     * @return the length in bytes
+     */
+    public int getLength() {
+        return _content.length;
+    }
+
+    /**
+     * Get the DOM, parsing the content on first use.
+     * @return the root element
+     */
+    @Override
+    public synchronized Node getNode() {
+        Node node = super.getNode();
+        if (node == null) {
+            try {
+                InputSource source = new InputSource(getInputStream());
+                source.setSystemId(getSystemId());
+                node = XMLHelper.getDocument(source).getDocumentElement();
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to parse XML payload", e);
+            }
+            setNode(node);
+        }
+        return node;
+    }
+}
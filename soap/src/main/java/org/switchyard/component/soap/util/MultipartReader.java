@@ -0,0 +1,243 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the parts of a MIME multipart stream one after the other, without buffering a whole part.
+ * Each part must be read, or skipped, before the next one is returned.
+ */
+public class MultipartReader {
+    private static final int BUFFER_SIZE = 8192;
+    private static final String HEADER_CHARSET = "ISO-8859-1";
+
+    private final InputStream _in;
+    private final byte[] _delimiter;
+    private final byte[] _buffer;
+    private int _position;
+    private int _limit;
+    private boolean _eof;
+    private boolean _done;
+    private PartInputStream _part;
+    private Map<String, String> _headers;
+
+    /**
+     * Create a reader over a multipart stream.
+     * @param in the multipart stream, positioned after the HTTP or MIME headers
+     * @param boundary the boundary parameter of the multipart content type
+     * @throws IOException if the boundary is not valid
+     */
+    public MultipartReader(final InputStream in, final String boundary) throws IOException {
+        if ((boundary == null) || (boundary.length() == 0)) {
+            throw new IOException("Missing MIME multipart boundary");
+        }
+        _in = in;
+        _delimiter = ("\r\n--" + boundary).getBytes(HEADER_CHARSET);
+        _buffer = new byte[Math.max(BUFFER_SIZE, _delimiter.length * 2)];
+        // The first boundary may start the stream, so read it as if a line break came before it
+        _buffer[0] = '\r';
+        _buffer[1] = '\n';
+        _limit = 2;
+    }
+
+    /**
+     * Move to the next part, skipping whatever is left of the current one.
+     * @return true if there is a next part, false once the closing boundary has been read
+     * @throws IOException if the stream could not be read or is not valid multipart
+     */
+    public boolean nextPart() throws IOException {
+        if (_done) {
+            return false;
+        }
+        // The preamble, or the rest of the current part
+        PartInputStream part = (_part != null) ? _part : new PartInputStream();
+        while (part.skip(Long.MAX_VALUE) > 0) {
+            continue;
+        }
+        _part = null;
+        _headers = null;
+
+        // The closing boundary need not end with a line break
+        if (!fill(2)) {
+            throw new IOException("Unexpected end of MIME multipart stream");
+        }
+        if ((_buffer[_position] == '-') && (_buffer[_position + 1] == '-')) {
+            _done = true;
+            return false;
+        }
+        // Anything else after the boundary is transport padding
+        readLine();
+        _headers = new HashMap<String, String>();
+        String name = null;
+        for (String line = readLine(); line.length() > 0; line = readLine()) {
+            if ((name != null) && ((line.charAt(0) == ' ') || (line.charAt(0) == '\t'))) {
+                _headers.put(name, _headers.get(name) + " " + line.trim());
+                continue;
+            }
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                throw new IOException("Invalid MIME part header '" + line + "'");
+            }
+            name = line.substring(0, colon).trim().toLowerCase();
+            _headers.put(name, line.substring(colon + 1).trim());
+        }
+        _part = new PartInputStream();
+        return true;
+    }
+
+    /**
+     * Get a header of the current part.
+     * @param name the header name, in any case
+     * @return the header value, or null if the part has no such header
+     */
+    public String getHeader(final String name) {
+        return (_headers != null) ? _headers.get(name.toLowerCase()) : null;
+    }
+
+    /**
+     * Get the content of the current part, which ends at the next boundary.
+     * @return the part content stream
+     */
+    public InputStream getPartStream() {
+        if (_part == null) {
+            throw new IllegalStateException("No current MIME part");
+        }
+        return _part;
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        while (true) {
+            if ((_position == _limit) && !fill(1)) {
+                throw new IOException("Unexpected end of MIME multipart stream");
+            }
+            byte b = _buffer[_position++];
+            if (b == '\n') {
+                int length = line.length();
+                if ((length > 0) && (line.charAt(length - 1) == '\r')) {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+            line.append((char) (b & 0xFF));
+        }
+    }
+
+    /**
+     * Read until at least the given number of bytes are buffered.
+     * @return false if the stream ended first
+     */
+    private boolean fill(final int required) throws IOException {
+        if (_limit - _position >= required) {
+            return true;
+        }
+        if (_position > 0) {
+            System.arraycopy(_buffer, _position, _buffer, 0, _limit - _position);
+            _limit -= _position;
+            _position = 0;
+        }
+        while (!_eof && (_limit < required)) {
+            int read = _in.read(_buffer, _limit, _buffer.length - _limit);
+            if (read < 0) {
+                _eof = true;
+            } else {
+                _limit += read;
+            }
+        }
+        return _limit >= required;
+    }
+
+    private int indexOfDelimiter() {
+        int last = _limit - _delimiter.length;
+        for (int i = _position; i <= last; i++) {
+            if (_buffer[i] == _delimiter[0]) {
+                int j = 1;
+                while ((j < _delimiter.length) && (_buffer[i + j] == _delimiter[j])) {
+                    j++;
+                }
+                if (j == _delimiter.length) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The content of one part, read straight from the buffer of the reader.
+     */
+    private final class PartInputStream extends InputStream {
+        private boolean _ended;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return (read < 0) ? -1 : (single[0] & 0xFF);
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (_ended) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill(_delimiter.length)) {
+                throw new IOException("Unexpected end of MIME multipart stream");
+            }
+            int delimiter = indexOfDelimiter();
+            int available;
+            if (delimiter == _position) {
+                _position += _delimiter.length;
+                _ended = true;
+                return -1;
+            } else if (delimiter != -1) {
+                available = delimiter - _position;
+            } else {
+                // The tail of the buffer may be the start of the delimiter
+                available = _limit - _position - _delimiter.length + 1;
+            }
+            int count = Math.min(len, available);
+            System.arraycopy(_buffer, _position, b, off, count);
+            _position += count;
+            return count;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            long skipped = 0;
+            byte[] discard = new byte[BUFFER_SIZE];
+            while (skipped < n) {
+                int read = read(discard, 0, (int) Math.min(discard.length, n - skipped));
+                if (read < 0) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates threads named with a prefix and a sequence number, so gateway threads can be told apart.
+ */
+public final class NamedThreadFactory implements ThreadFactory {
+    private final AtomicInteger _threadNumber = new AtomicInteger();
+    private final String _prefix;
+    private final boolean _daemon;
+
+    /**
+     * Create a factory.
+     * @param prefix the prefix of the thread names
+     * @param daemon true to create daemon threads
+     */
+    public NamedThreadFactory(final String prefix, final boolean daemon) {
+        _prefix = prefix;
+        _daemon = daemon;
+    }
+
+    /**
+     * Create a thread named after the prefix.
+     * @param runnable the task of the thread
+     * @return the thread
+     */
+    public Thread newThread(final Runnable runnable) {
+        Thread thread = new Thread(runnable, _prefix + _threadNumber.incrementAndGet());
+        thread.setDaemon(_daemon);
+        return thread;
+    }
+}
@@ -19,13 +19,19 @@
  
 package org.switchyard.component.soap.util;
 
-import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.io.PrintWriter;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import javax.activation.DataHandler;
 import javax.xml.namespace.QName;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.soap.AttachmentPart;
 import javax.xml.soap.Detail;
 import javax.xml.soap.DetailEntry;
 import javax.xml.soap.MessageFactory;
@@ -34,7 +40,12 @@ import javax.xml.soap.SOAPException;
 import javax.xml.soap.SOAPFault;
 import javax.xml.soap.SOAPMessage;
 import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.XMLEvent;
 import javax.xml.ws.soap.SOAPFaultException;
 
 import org.apache.log4j.Logger;
@@ -50,7 +61,25 @@ import org.w3c.dom.Node;
 public final class SOAPUtil {
     private static final Logger LOGGER = Logger.getLogger(SOAPUtil.class);
     private static final QName SERVER_FAULT_QN = new QName("http://schemas.xmlsoap.org/soap/envelope/", "Server");
+    private static final QName ENVELOPE_QN = new QName(SERVER_FAULT_QN.getNamespaceURI(), "Envelope");
+    private static final QName HEADER_QN = new QName(SERVER_FAULT_QN.getNamespaceURI(), "Header");
+    private static final QName BODY_QN = new QName(SERVER_FAULT_QN.getNamespaceURI(), "Body");
+    private static final String DEFAULT_ENCODING = "UTF-8";
     private static final boolean RETURN_STACK_TRACES = false;
+    private static final String SOAP_ACTION = "SOAPAction";
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final String RETRY_AFTER = "Retry-After";
+
+    /**
+     * The Message context property holding SOAP attachments, a Map of DataHandler keyed by Content-ID.
+     * Attachments streamed by a published WebService are released once the response has been sent,
+     * those of a one-way request are retained and the service disposes of them when done, see
+     * {@link AttachmentDataSource#dispose()}.
+     */
+    public static final String ATTACHMENTS = "SOAP_ATTACHMENTS";
+
+    /** The detail entry of a Server fault giving the seconds to wait before retrying. */
+    public static final QName RETRY_AFTER_QN = new QName("urn:switchyard-component-soap:fault:1.0", "retryAfter", "sy");
 
     /** SOAP Message Factory holder. */
     public static final MessageFactory SOAP_MESSAGE_FACTORY;
@@ -81,6 +110,217 @@ public final class SOAPUtil {
         return operationName;
     }
 
+    /**
+     * Retrieves the QName of the first element in the SOAP Body.
+     *
+     * @param soapMessage The SOAP message.
+     * @return The QName, or null if the body is empty.
+     * @throws SOAPException If the SOAP message is invalid
+     */
+    public static QName getPayloadQName(final SOAPMessage soapMessage) throws SOAPException {
+        SOAPBody body = soapMessage.getSOAPPart().getEnvelope().getBody();
+        if (body != null) {
+            for (Node node = body.getFirstChild(); node != null; node = node.getNextSibling()) {
+                if (node.getNodeType() == Node.ELEMENT_NODE) {
+                    return new QName(node.getNamespaceURI(), node.getLocalName());
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the QName of the first element in the SOAP Body of a serialized envelope,
+     * reading no further than that element.
+     *
+     * @param envelope The serialized SOAP envelope.
+     * @return The QName, or null if the body is empty.
+     * @throws XMLStreamException If the envelope is not well formed
+     */
+    public static QName getPayloadQName(final InputStream envelope) throws XMLStreamException {
+        final XMLStreamReader reader = XMLHelper.getXMLStreamReader(envelope);
+        try {
+            int depth = 0;
+            boolean inBody = false;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (inBody) {
+                        return reader.getName();
+                    }
+                    depth++;
+                    inBody = (depth == 2) && BODY_QN.equals(reader.getName());
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (inBody) {
+                        return null;
+                    }
+                    depth--;
+                }
+            }
+            return null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Checks if buffered XML is a SOAP envelope, reading no further than its root element.
+     *
+     * @param source The buffered XML.
+     * @return true if the root element is a SOAP Envelope
+     * @throws XMLStreamException If the XML is not well formed
+     */
+    public static boolean isEnvelope(final LazyDOMSource source) throws XMLStreamException {
+        return ENVELOPE_QN.equals(source.getRootQName());
+    }
+
+    /**
+     * Removes the SOAP Header from a serialized envelope, copying everything else as XML events.
+     *
+     * @param envelope The serialized SOAP envelope.
+     * @return The envelope without its Header.
+     * @throws XMLStreamException If the envelope is not well formed
+     */
+    public static LazyDOMSource removeHeader(final LazyDOMSource envelope) throws XMLStreamException {
+        final XMLEventReader reader = XMLHelper.getXMLEventReader(envelope.getInputStream());
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            // Write in the encoding the envelope declares
+            XMLEvent event = reader.nextEvent();
+            String encoding = DEFAULT_ENCODING;
+            if (event.isStartDocument() && ((StartDocument) event).encodingSet()) {
+                encoding = ((StartDocument) event).getCharacterEncodingScheme();
+            }
+            final XMLEventWriter writer = XMLHelper.getXMLEventWriter(bytes, encoding);
+            int depth = 0;
+            int skipped = 0;
+            while (true) {
+                if (skipped > 0) {
+                    if (event.isStartElement()) {
+                        skipped++;
+                    } else if (event.isEndElement()) {
+                        skipped--;
+                    }
+                } else if (event.isStartElement() && (++depth == 2) && HEADER_QN.equals(event.asStartElement().getName())) {
+                    depth--;
+                    skipped = 1;
+                } else {
+                    if (event.isEndElement()) {
+                        depth--;
+                    }
+                    writer.add(event);
+                }
+                if (!reader.hasNext()) {
+                    break;
+                }
+                event = reader.nextEvent();
+            }
+            writer.close();
+        } finally {
+            reader.close();
+        }
+        final LazyDOMSource stripped = new LazyDOMSource(bytes.toByteArray());
+        stripped.setSystemId(envelope.getSystemId());
+        return stripped;
+    }
+
+    /**
+     * Retrieves the SOAPAction MIME header, without the surrounding quotes.
+     *
+     * @param soapMessage The SOAP message.
+     * @return The SOAPAction, or null if not present.
+     */
+    public static String getSoapAction(final SOAPMessage soapMessage) {
+        String[] values = soapMessage.getMimeHeaders().getHeader(SOAP_ACTION);
+        if (values == null || values.length == 0) {
+            return null;
+        }
+        String soapAction = values[0];
+        if (soapAction.length() > 1 && soapAction.startsWith("\"") && soapAction.endsWith("\"")) {
+            soapAction = soapAction.substring(1, soapAction.length() - 1);
+        }
+        return soapAction;
+    }
+
+    /**
+     * Retrieves the Content-Length MIME header.
+     *
+     * @param soapMessage The SOAP message.
+     * @return The content length, or -1 if not present or not a number.
+     */
+    public static long getContentLength(final SOAPMessage soapMessage) {
+        String[] values = soapMessage.getMimeHeaders().getHeader(CONTENT_LENGTH);
+        if (values == null || values.length == 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(values[0].trim());
+        } catch (NumberFormatException nfe) {
+            return -1;
+        }
+    }
+
+    /**
+     * Retrieves the attachments of a SOAP message, keyed by Content-ID. Attachments without a
+     * Content-ID are keyed by their Content-Location, or else by their position.
+     *
+     * @param soapMessage The SOAP message.
+     * @return The attachments in message order, or null if there are none.
+     * @throws SOAPException If an attachment could not be read
+     */
+    public static Map<String, DataHandler> getAttachments(final SOAPMessage soapMessage) throws SOAPException {
+        if (soapMessage.countAttachments() == 0) {
+            return null;
+        }
+        Map<String, DataHandler> attachments = new LinkedHashMap<String, DataHandler>();
+        Iterator<?> parts = soapMessage.getAttachments();
+        while (parts.hasNext()) {
+            AttachmentPart part = (AttachmentPart) parts.next();
+            String id = toContentId(part.getContentId());
+            if (id == null) {
+                id = part.getContentLocation();
+            }
+            if (id == null) {
+                id = String.valueOf(attachments.size());
+            }
+            attachments.put(id, part.getDataHandler());
+        }
+        return attachments;
+    }
+
+    /**
+     * Adds attachments to a SOAP message, each with its key as Content-ID. The content is
+     * not read until the message is written.
+     *
+     * @param soapMessage The SOAP message.
+     * @param attachments The attachments keyed by Content-ID.
+     */
+    public static void addAttachments(final SOAPMessage soapMessage, final Map<String, DataHandler> attachments) {
+        for (Map.Entry<String, DataHandler> attachment : attachments.entrySet()) {
+            AttachmentPart part = soapMessage.createAttachmentPart(attachment.getValue());
+            part.setContentId("<" + attachment.getKey() + ">");
+            soapMessage.addAttachmentPart(part);
+        }
+    }
+
+    /**
+     * Retrieves the Content-ID from a MIME header value, without the surrounding angle brackets.
+     * This is the form an xop:Include element refers to after its cid: prefix.
+     *
+     * @param header The Content-ID header value.
+     * @return The Content-ID, or null if the header is null.
+     */
+    public static String toContentId(final String header) {
+        if (header == null) {
+            return null;
+        }
+        String contentId = header.trim();
+        if (contentId.length() > 1 && contentId.startsWith("<") && contentId.endsWith(">")) {
+            contentId = contentId.substring(1, contentId.length() - 1);
+        }
+        return contentId;
+    }
+
     /**
      * Generates a SOAP Fault Message based on the Exception passed.
      * @param th The Exception.
@@ -88,20 +328,21 @@ public final class SOAPUtil {
      * @throws SOAPException If the message could not be generated.
      */
     public static SOAPMessage generateFault(final Throwable th) throws SOAPException {
+        // Built anew every time: SAAJ cannot clone a message, and importing a pre-built fault
+        // allocated as much as addFault, most of the cost being the message itself
         final SOAPMessage faultMsg = SOAP_MESSAGE_FACTORY.createMessage();
         if (th instanceof SOAPFaultException) {
             // Copy the Fault from the exception
             SOAPFault exFault = ((SOAPFaultException) th).getFault();
-            SOAPFault fault = faultMsg.getSOAPBody().addFault(exFault.getFaultCodeAsQName(), exFault.getFaultString());
+            SOAPFault fault = addFault(faultMsg, exFault.getFaultCodeAsQName(), exFault.getFaultString());
             fault.addNamespaceDeclaration(fault.getElementQName().getPrefix(), SERVER_FAULT_QN.getNamespaceURI());
             fault.setFaultActor(exFault.getFaultActor());
             if (exFault.hasDetail()) {
                 Detail exDetail = exFault.getDetail();
                 Detail detail = fault.addDetail();
+                Document doc = detail.getOwnerDocument();
                 for (Iterator<DetailEntry> entries = exDetail.getDetailEntries(); entries.hasNext();) {
-                    DetailEntry exEntry = entries.next();
-                    DetailEntry entry = detail.addDetailEntry(exEntry.getElementName());
-                    entry.setValue(exEntry.getValue());
+                    detail.appendChild(doc.importNode(entries.next(), true));
                 }
             }
         } else {
@@ -111,14 +352,42 @@ public final class SOAPUtil {
                 th.printStackTrace(pw);
                 pw.flush();
                 pw.close();
-                faultMsg.getSOAPBody().addFault(SERVER_FAULT_QN, sw.toString());
+                addFault(faultMsg, SERVER_FAULT_QN, sw.toString());
             } else {
-                faultMsg.getSOAPBody().addFault(SERVER_FAULT_QN, th.getMessage());
+                addFault(faultMsg, SERVER_FAULT_QN, th.getMessage());
             }
         }
         return faultMsg;
     }
 
+    /**
+     * Generates a SOAP Server Fault Message telling the caller to retry later. The number of seconds
+     * to wait is carried in a {@link #RETRY_AFTER_QN} detail entry and a Retry-After MIME header.
+     * @param reason The fault string.
+     * @param retryAfter The seconds to wait before retrying.
+     * @return The SOAP Message containing the Fault.
+     * @throws SOAPException If the message could not be generated.
+     */
+    public static SOAPMessage generateRetryFault(final String reason, final int retryAfter) throws SOAPException {
+        final SOAPMessage faultMsg = SOAP_MESSAGE_FACTORY.createMessage();
+        addFault(faultMsg, SERVER_FAULT_QN, reason).addDetail().addDetailEntry(RETRY_AFTER_QN).setValue(String.valueOf(retryAfter));
+        faultMsg.getMimeHeaders().setHeader(RETRY_AFTER, String.valueOf(retryAfter));
+        return faultMsg;
+    }
+
+    /**
+     * Add a Fault to the body of a SOAP Message.
+     * @param faultMsg the SOAP Message
+     * @param faultCode the fault code
+     * @param faultString the fault string, may be null
+     * @return the Fault
+     * @throws SOAPException if the Fault could not be added
+     */
+    private static SOAPFault addFault(final SOAPMessage faultMsg, final QName faultCode, final String faultString) throws SOAPException {
+        // SAAJ does not accept a null fault string, an empty one reads back as null
+        return faultMsg.getSOAPBody().addFault(faultCode, (faultString != null) ? faultString : "");
+    }
+
     /**
      * Create a new document based on a SOAP Message.
      * @param soapRes the SOAP Message
@@ -127,7 +396,7 @@ public final class SOAPUtil {
      * @throws XMLStreamException If the SOAP message could not be read
      */
     public static Document parseAsDom(final String soapRes) throws ParserConfigurationException, XMLStreamException {
-        final XMLEventReader reader = XMLHelper.getXMLEventReader(new ByteArrayInputStream(soapRes.getBytes()));
+        final XMLEventReader reader = XMLHelper.getXMLEventReader(new StringReader(soapRes));
         return XMLHelper.createDocument(reader);
     }
 
@@ -22,22 +22,31 @@
  
 package org.switchyard.component.soap.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.JarURLConnection;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import javax.wsdl.BindingOperation;
 import javax.wsdl.Definition;
 import javax.wsdl.Operation;
 import javax.wsdl.OperationType;
 import javax.wsdl.Port;
 import javax.wsdl.Service;
 import javax.wsdl.WSDLException;
+import javax.wsdl.extensions.soap.SOAPOperation;
+import javax.wsdl.extensions.soap12.SOAP12Operation;
 import javax.wsdl.factory.WSDLFactory;
 import javax.wsdl.xml.WSDLReader;
 import javax.xml.XMLConstants;
@@ -69,40 +78,33 @@ public final class WSDLUtil {
     public static final QName SOAP_FAULT_MESSAGE_TYPE = 
         QName.valueOf("{http://schemas.xmlsoap.org/soap/envelope/}Fault");
 
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_CACHED_WSDLS = 64;
+
+    /**
+     * WSDLs read from file and jar URLs, keyed by URL and validated against the last modified time.
+     * Entries are evicted when a gateway using them stops.
+     */
+    private static final ConcurrentHashMap<String, CachedWSDL> CACHE = new ConcurrentHashMap<String, CachedWSDL>();
+
     private WSDLUtil() {
     }
 
     /**
-     * Read the WSDL document and create a WSDL Definition.
+     * Read the WSDL document and create a WSDL Definition. The Definition may be shared
+     * with every other reader of the same WSDL, so it must not be modified.
      *
      * @param wsdlLocation location pointing to a WSDL XML definition.
      * @return the Definition.
      * @throws WSDLException If unable to read the WSDL
      */
     public static Definition readWSDL(final String wsdlLocation) throws WSDLException {
-        InputStream inputStream = null;
         try {
-            URL url = getURL(wsdlLocation);
-            inputStream = url.openStream();
-            InputSource source = new InputSource(inputStream);
-            source.setSystemId(url.toString());
-            Document wsdlDoc = XMLHelper.getDocument(source);
-            WSDLFactory wsdlFactory = WSDLFactory.newInstance();
-            WSDLReader reader = wsdlFactory.newWSDLReader();
-            reader.setFeature("javax.wsdl.verbose", false);
-            return reader.readWSDL(url.toString(), wsdlDoc);
+            return getWSDL(getURL(wsdlLocation)).getDefinition();
         } catch (Exception e) {
             throw new WSDLException(WSDLException.OTHER_ERROR,
                     "Unable to read WSDL at '"
                     + wsdlLocation, e);
-        } finally {
-            if (inputStream != null) {
-                try {
-                    inputStream.close();
-                } catch (IOException ioe) {
-                    LOGGER.error(ioe);
-                }
-            }
         }
     }
 
@@ -118,7 +120,7 @@ public final class WSDLUtil {
     public static StreamSource getStream(final String wsdlURI) throws WSDLException {
         try {
             URL url = getURL(wsdlURI);
-            InputStream inputStream = url.openStream();
+            InputStream inputStream = new ByteArrayInputStream(getWSDL(url).getContent());
             StreamSource inputSource = new StreamSource(inputStream);
             inputSource.setSystemId(url.toString());
             return inputSource;
@@ -129,6 +131,100 @@ public final class WSDLUtil {
         }
     }
 
+    /**
+     * Remove the WSDL at the specified URL from the cache. Gateways still using it keep their
+     * Definition, the next reader reads the WSDL again.
+     *
+     * @param url the WSDL URL.
+     */
+    public static void evict(final URL url) {
+        CACHE.remove(url.toExternalForm());
+    }
+
+    /**
+     * Get the WSDL at the specified URL, from the cache if it has not been modified since it was read.
+     *
+     * @param url the WSDL URL.
+     * @return the WSDL.
+     * @throws IOException If unable to read the WSDL
+     */
+    private static CachedWSDL getWSDL(final URL url) throws IOException {
+        String key = url.toExternalForm();
+        long lastModified = getLastModified(url);
+        if (lastModified <= 0) {
+            // Cannot tell if it has changed, so always read it
+            return new CachedWSDL(url, readContent(url), lastModified);
+        }
+        CachedWSDL cached = CACHE.get(key);
+        if ((cached != null) && (cached.getLastModified() == lastModified)) {
+            return cached;
+        }
+        CachedWSDL wsdl = new CachedWSDL(url, readContent(url), lastModified);
+        if ((cached == null) && (CACHE.size() >= MAX_CACHED_WSDLS)) {
+            // WSDLs are normally a handful, stop caching if they are not
+            return wsdl;
+        }
+        boolean stored = (cached == null) ? (CACHE.putIfAbsent(key, wsdl) == null) : CACHE.replace(key, cached, wsdl);
+        if (!stored) {
+            // Another gateway read it at the same time, share its Definition if it is the same version
+            CachedWSDL other = CACHE.get(key);
+            if ((other != null) && (other.getLastModified() == lastModified)) {
+                return other;
+            }
+        }
+        return wsdl;
+    }
+
+    /**
+     * Get the last modified time of a file URL, or of the jar file of a jar URL. Imported documents are not checked.
+     *
+     * @param url the URL.
+     * @return the last modified time, or 0 if unknown.
+     * @throws IOException If unable to access the URL
+     */
+    private static long getLastModified(final URL url) throws IOException {
+        String protocol = url.getProtocol();
+        if ("file".equals(protocol)) {
+            try {
+                return new File(url.toURI()).lastModified();
+            } catch (URISyntaxException use) {
+                return 0;
+            } catch (IllegalArgumentException iae) {
+                return 0;
+            }
+        } else if ("jar".equals(protocol)) {
+            // Not connected, so the jar file is not opened and left locked in the URL cache
+            URL jarFileURL = ((JarURLConnection) url.openConnection()).getJarFileURL();
+            if (!"jar".equals(jarFileURL.getProtocol())) {
+                return getLastModified(jarFileURL);
+            }
+        }
+        return 0;
+    }
+
+    private static byte[] readContent(final URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        // Closing the stream then closes a jar file too, rather than keeping it open in the URL cache
+        connection.setUseCaches(false);
+        InputStream inputStream = connection.getInputStream();
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream(BUFFER_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int len = inputStream.read(buffer);
+            while (len > -1) {
+                content.write(buffer, 0, len);
+                len = inputStream.read(buffer);
+            }
+            return content.toByteArray();
+        } finally {
+            try {
+                inputStream.close();
+            } catch (IOException ioe) {
+                LOGGER.error(ioe);
+            }
+        }
+    }
+
     /**
      * Convert a path/uri to a URL.
      *
@@ -152,6 +248,7 @@ public final class WSDLUtil {
     /**
      * Get the Service from the WSDL given a PortName.
      * If the PortName.getServiceQName() is empty (QName("")) then this method returns the first found Service.
+     * The Service belongs to a shared Definition, so it must not be modified.
      *
      * @param wsdlLocation location pointing to a WSDL XML definition.
      * @param portName the PortName.
@@ -224,6 +321,26 @@ public final class WSDLUtil {
         return port.getBinding().getPortType().getOperation(operationName, null, null);
     }
 
+    /**
+     * Get the SOAPAction declared on the binding for the specified SOAP operation name.
+     * @param port The WSDL port.
+     * @param operationName The operation name.
+     * @return The SOAPAction, or null if none is declared.
+     */
+    public static String getSoapAction(final Port port, final String operationName) {
+        BindingOperation bindingOperation = port.getBinding().getBindingOperation(operationName, null, null);
+        if (bindingOperation != null) {
+            for (Object element : bindingOperation.getExtensibilityElements()) {
+                if (element instanceof SOAPOperation) {
+                    return ((SOAPOperation) element).getSoapActionURI();
+                } else if (element instanceof SOAP12Operation) {
+                    return ((SOAP12Operation) element).getSoapActionURI();
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Check if we are invoking a @Oneway annotated method.
      *
@@ -337,4 +454,41 @@ public final class WSDLUtil {
             return ExchangePattern.IN_OUT;
         }
     }
+
+    /**
+     * The content of a WSDL document and its Definition, parsed on first use.
+     */
+    private static final class CachedWSDL {
+        private final URL _url;
+        private final byte[] _content;
+        private final long _lastModified;
+        private Definition _definition;
+
+        private CachedWSDL(final URL url, final byte[] content, final long lastModified) {
+            _url = url;
+            _content = content;
+            _lastModified = lastModified;
+        }
+
+        private byte[] getContent() {
+            return _content;
+        }
+
+        private long getLastModified() {
+            return _lastModified;
+        }
+
+        private synchronized Definition getDefinition() throws Exception {
+            if (_definition == null) {
+                InputSource source = new InputSource(new ByteArrayInputStream(_content));
+                source.setSystemId(_url.toString());
+                Document wsdlDoc = XMLHelper.getDocument(source);
+                WSDLFactory wsdlFactory = WSDLFactory.newInstance();
+                WSDLReader reader = wsdlFactory.newWSDLReader();
+                reader.setFeature("javax.wsdl.verbose", false);
+                _definition = reader.readWSDL(_url.toString(), wsdlDoc);
+            }
+            return _definition;
+        }
+    }
 }
@@ -26,7 +26,9 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -45,10 +47,12 @@ import javax.xml.stream.events.XMLEvent;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMResult;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
@@ -61,6 +65,7 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.XMLFilterImpl;
 
 
 /**
@@ -84,9 +89,62 @@ public final class XMLHelper {
      */
     private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY;
     /**
-     * The Document builder for document creation (not parsing).
+     * The SAX parser factory.
      */
-    private static final AtomicReference<DocumentBuilder> DOCUMENT_BUILDER = new AtomicReference<DocumentBuilder>();
+    private static final SAXParserFactory SAX_PARSER_FACTORY;
+    /**
+     * The maximum number of idle instances kept in each pool.
+     */
+    private static final int MAX_POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    /**
+     * The pool of Document builders for document creation and parsing.
+     */
+    private static final Pool<DocumentBuilder, ParserConfigurationException> DOCUMENT_BUILDERS =
+        new Pool<DocumentBuilder, ParserConfigurationException>() {
+        protected DocumentBuilder create() throws ParserConfigurationException {
+            return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+        }
+        protected void reset(final DocumentBuilder builder) {
+            builder.reset();
+        }
+    };
+    /**
+     * The pool of SAX parsers for content comparison and parsing without processing instructions.
+     */
+    private static final Pool<SAXParser, ParserConfigurationException> SAX_PARSERS =
+        new Pool<SAXParser, ParserConfigurationException>() {
+        protected SAXParser create() throws ParserConfigurationException {
+            try {
+                return SAX_PARSER_FACTORY.newSAXParser();
+            } catch (final SAXException saxe) {
+                final ParserConfigurationException pce = new ParserConfigurationException(saxe.getMessage());
+                pce.initCause(saxe);
+                throw pce;
+            }
+        }
+        protected void reset(final SAXParser parser) {
+            parser.reset();
+        }
+    };
+    /**
+     * The transformer factory.
+     */
+    private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
+    /**
+     * The pool of identity transformers for serialisation.
+     */
+    private static final Pool<Transformer, TransformerConfigurationException> IDENTITY_TRANSFORMERS =
+        new Pool<Transformer, TransformerConfigurationException>() {
+        protected Transformer create() throws TransformerConfigurationException {
+            synchronized (TRANSFORMER_FACTORY) {
+                // the factory is not guaranteed to be thread safe
+                return TRANSFORMER_FACTORY.newTransformer();
+            }
+        }
+        protected void reset(final Transformer transformer) {
+            transformer.reset();
+        }
+    };
     /**
      * The event writer creator for DOM documents.
      */
@@ -387,18 +445,19 @@ public final class XMLHelper {
      */
     public static boolean compareXMLContent(final InputSource content1, final InputSource content2)
         throws ParserConfigurationException, SAXException, IOException {
-        final SAXParserFactory parserFactory = SAXParserFactory.newInstance();
-        parserFactory.setNamespaceAware(true);
-
-        final SAXParser parser = parserFactory.newSAXParser();
-
-        final IdentitySAXHandler handler1 = new IdentitySAXHandler();
-        parser.parse(content1, handler1);
+        final SAXParser parser = SAX_PARSERS.borrow();
+        try {
+            final IdentitySAXHandler handler1 = new IdentitySAXHandler();
+            parser.parse(content1, handler1);
+            parser.reset();
 
-        final IdentitySAXHandler handler2 = new IdentitySAXHandler();
-        parser.parse(content2, handler2);
+            final IdentitySAXHandler handler2 = new IdentitySAXHandler();
+            parser.parse(content2, handler2);
 
-        return (handler1.getRootElement().equals(handler2.getRootElement()));
+            return (handler1.getRootElement().equals(handler2.getRootElement()));
+        } finally {
+            SAX_PARSERS.release(parser);
+        }
     }
 
     /**
@@ -413,16 +472,10 @@ public final class XMLHelper {
      */
     public static boolean compareXMLContent(final Node node1, final Node node2)
         throws ParserConfigurationException, TransformerException, SAXException, IOException {
-        TransformerFactory transFactory = TransformerFactory.newInstance();
-        Transformer transformer = transFactory.newTransformer();
         StringWriter writer1 = new StringWriter();
         StringWriter writer2 = new StringWriter();
-        DOMSource source = new DOMSource(node1);
-        StreamResult result = new StreamResult(writer1);
-        transformer.transform(source, result);
-        source = new DOMSource(node2);
-        result = new StreamResult(writer2);
-        transformer.transform(source, result);
+        transform(new DOMSource(node1), new StreamResult(writer1));
+        transform(new DOMSource(node2), new StreamResult(writer2));
         return compareXMLContent(writer1.toString(), writer2.toString());
     }
 
@@ -461,10 +514,12 @@ public final class XMLHelper {
      */
     private static Document getNewDocument()
         throws ParserConfigurationException {
-        final DocumentBuilder builder = getCreationDocumentBuilder();
-        synchronized (builder) {
-            // synchronized as it is not guaranteed to be thread safe
+        // builders are not guaranteed to be thread safe, each caller borrows its own
+        final DocumentBuilder builder = DOCUMENT_BUILDERS.borrow();
+        try {
             return builder.newDocument();
+        } finally {
+            DOCUMENT_BUILDERS.release(builder);
         }
     }
     /**
@@ -478,10 +533,12 @@ public final class XMLHelper {
      */
     public static Document getDocument(final InputSource source)
         throws ParserConfigurationException, IOException, SAXException {
-        final DocumentBuilder builder = getCreationDocumentBuilder();
-        synchronized (builder) {
-            // synchronized as it is not guaranteed to be thread safe
+        // builders are not guaranteed to be thread safe, each caller borrows its own
+        final DocumentBuilder builder = DOCUMENT_BUILDERS.borrow();
+        try {
             return builder.parse(source);
+        } finally {
+            DOCUMENT_BUILDERS.release(builder);
         }
     }
 
@@ -494,15 +551,56 @@ public final class XMLHelper {
      */
     public static String toString(final Node node)
         throws ParserConfigurationException, TransformerException {
-        TransformerFactory transFactory = TransformerFactory.newInstance();
-        Transformer transformer = transFactory.newTransformer();
         StringWriter writer = new StringWriter();
-        DOMSource source = new DOMSource(node);
-        StreamResult result = new StreamResult(writer);
-        transformer.transform(source, result);
+        transform(new DOMSource(node), new StreamResult(writer));
         return writer.toString();
     }
 
+    /**
+     * Copy a Source to a Result using a pooled identity transformer.
+     * @param source The Source to be read.
+     * @param result The Result to be written.
+     * @throws TransformerException Transformer exception
+     */
+    public static void transform(final Source source, final Result result)
+        throws TransformerException {
+        final Transformer transformer = IDENTITY_TRANSFORMERS.borrow();
+        try {
+            transformer.transform(source, result);
+        } finally {
+            IDENTITY_TRANSFORMERS.release(transformer);
+        }
+    }
+
+    /**
+     * Parse XML characters into a Result, leaving out any processing instructions as some DOM
+     * implementations, such as SAAJ, refuse them.
+     * @param reader The characters to be parsed.
+     * @param result The Result to be written.
+     * @throws TransformerException Transformer exception
+     */
+    public static void transformWithoutProcessingInstructions(final Reader reader, final Result result)
+        throws TransformerException {
+        final SAXParser parser;
+        try {
+            parser = SAX_PARSERS.borrow();
+        } catch (final ParserConfigurationException pce) {
+            throw new TransformerException(pce);
+        }
+        try {
+            final XMLFilterImpl filter = new XMLFilterImpl(parser.getXMLReader()) {
+                public void processingInstruction(final String target, final String data) {
+                    // Dropped
+                }
+            };
+            transform(new SAXSource(filter, new InputSource(reader)), result);
+        } catch (final SAXException saxe) {
+            throw new TransformerException(saxe);
+        } finally {
+            SAX_PARSERS.release(parser);
+        }
+    }
+
     /**
      * Get the first child Element of the supplied node that matches a given tag name.
      *
@@ -527,25 +625,6 @@ public final class XMLHelper {
         return null;
     }
     
-    /**
-     * Get the document builder for creation
-     * @return The document builder
-     * @throws ParserConfigurationException for errors during creation
-     */
-    private static DocumentBuilder getCreationDocumentBuilder()
-        throws ParserConfigurationException {
-        final DocumentBuilder current = DOCUMENT_BUILDER.get();
-        if (current != null) {
-            return current;
-        }
-        final DocumentBuilder newBuilder = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
-        if (DOCUMENT_BUILDER.compareAndSet(null, newBuilder)) {
-            return newBuilder;
-        } else {
-            return DOCUMENT_BUILDER.get();
-        }
-    }
-
     static {
         final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
         xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
@@ -561,7 +640,66 @@ public final class XMLHelper {
         final DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory.newInstance();
         docBuilderFactory.setNamespaceAware(true);
         DOCUMENT_BUILDER_FACTORY = docBuilderFactory;
-        
+
+        final SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+        saxParserFactory.setNamespaceAware(true);
+        SAX_PARSER_FACTORY = saxParserFactory;
+    }
+
+    /**
+     * A bounded, lock free pool of parsers and transformers, which are not thread safe.
+     * Instances are created on demand, so an instance is never waited for.
+     * @param <T> the pooled type
+     * @param <E> the exception thrown on creation
+     */
+    private abstract static class Pool<T, E extends Exception> {
+        private final Queue<T> _idle = new ConcurrentLinkedQueue<T>();
+        private final AtomicInteger _idleCount = new AtomicInteger();
+
+        /**
+         * Take an idle instance, or create a new one if none is idle.
+         * @return the instance
+         * @throws E for errors during creation
+         */
+        T borrow() throws E {
+            final T instance = _idle.poll();
+            if (instance == null) {
+                return create();
+            }
+            _idleCount.decrementAndGet();
+            return instance;
+        }
+
+        /**
+         * Reset an instance and return it to the pool, dropping it if the pool is full.
+         * @param instance the instance
+         */
+        void release(final T instance) {
+            try {
+                reset(instance);
+            } catch (final UnsupportedOperationException uoe) {
+                // cannot be reused
+                return;
+            }
+            if (_idleCount.incrementAndGet() <= MAX_POOL_SIZE) {
+                _idle.offer(instance);
+            } else {
+                _idleCount.decrementAndGet();
+            }
+        }
+
+        /**
+         * Create a new instance.
+         * @return the instance
+         * @throws E for errors during creation
+         */
+        protected abstract T create() throws E;
+
+        /**
+         * Reset an instance to its initial state.
+         * @param instance the instance
+         */
+        protected abstract void reset(T instance);
     }
 
     /**
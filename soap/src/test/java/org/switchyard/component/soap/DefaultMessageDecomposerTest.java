@@ -0,0 +1,161 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.soap.SOAPBody;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.switchyard.Context;
+import org.switchyard.Message;
+import org.switchyard.component.soap.util.SOAPUtil;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+/**
+ * Tests for DefaultMessageDecomposer.
+ */
+public class DefaultMessageDecomposerTest {
+    private static final String NAMESPACE = "urn:switchyard-component-soap:test-ws:1.0";
+    private static final String PAYLOAD = "<test:sayHello xmlns:test=\"" + NAMESPACE + "\">"
+                     + "<arg0>Hello</arg0>"
+                     + "</test:sayHello>";
+
+    private DefaultMessageDecomposer _decomposer = new DefaultMessageDecomposer();
+
+    @Test
+    public void decomposeString() throws Exception {
+        SOAPBody body = _decomposer.decompose(newMessage(PAYLOAD)).getSOAPBody();
+        assertSayHello(body, "Hello");
+    }
+
+    @Test
+    public void decomposeStringWithCommentsAndProcessingInstructions() throws Exception {
+        String payload = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                     + "<!-- Leading comment --><?switchyard leading instruction?>"
+                     + PAYLOAD
+                     + "<!-- Trailing comment -->";
+        SOAPBody body = _decomposer.decompose(newMessage(payload)).getSOAPBody();
+        assertSayHello(body, "Hello");
+    }
+
+    @Test
+    public void decomposeNonASCIIString() throws Exception {
+        String greeting = "Gr\u00FC\u00DFe \u3053\u3093\u306B\u3061\u306F \u20AC";
+        String payload = "<test:sayHello xmlns:test=\"" + NAMESPACE + "\">"
+                     + "<arg0>" + greeting + "</arg0>"
+                     + "</test:sayHello>";
+        SOAPMessage soapMessage = _decomposer.decompose(newMessage(payload));
+        assertSayHello(soapMessage.getSOAPBody(), greeting);
+
+        // The characters must also survive serialization of the envelope
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        soapMessage.writeTo(out);
+        Assert.assertTrue(out.toString("UTF-8").contains("<arg0>" + greeting + "</arg0>"));
+    }
+
+    @Test
+    public void decomposeStringWithoutRootElement() throws Exception {
+        try {
+            _decomposer.decompose(newMessage("<!-- Only a comment --><?switchyard instruction?>"));
+            Assert.fail("Expected SOAPException");
+        } catch (SOAPException e) {
+            Assert.assertEquals("Error parsing SOAP message to DOM Element.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void decomposeDetachedSAAJElement() throws Exception {
+        SOAPMessage request = SOAPUtil.SOAP_MESSAGE_FACTORY.createMessage();
+        SOAPBody requestBody = request.getSOAPBody();
+        requestBody.appendChild(requestBody.getOwnerDocument().importNode(parse(PAYLOAD).getDocumentElement(), true));
+        Element input = (Element) requestBody.getFirstChild();
+        requestBody.removeChild(input);
+
+        SOAPBody body = _decomposer.decompose(newMessage(input)).getSOAPBody();
+        assertSayHello(body, "Hello");
+        Assert.assertSame(body.getOwnerDocument(), body.getFirstChild().getOwnerDocument());
+        // The SAAJ reference implementation lets the element be moved across instead of copied
+        Assert.assertSame(input, body.getFirstChild());
+    }
+
+    @Test
+    public void decomposeForeignElement() throws Exception {
+        Document document = parse(PAYLOAD);
+        Element input = document.getDocumentElement();
+
+        SOAPBody body = _decomposer.decompose(newMessage(input)).getSOAPBody();
+        assertSayHello(body, "Hello");
+        Assert.assertSame(body.getOwnerDocument(), body.getFirstChild().getOwnerDocument());
+        // A foreign element is copied, leaving the original in place
+        Assert.assertSame(document, input.getOwnerDocument());
+        Assert.assertSame(input, document.getDocumentElement());
+        Assert.assertEquals("Hello", input.getTextContent());
+    }
+
+    private static void assertSayHello(SOAPBody body, String arg0) {
+        Node payload = body.getFirstChild();
+        Assert.assertNotNull(payload);
+        Assert.assertNull("Only the payload element is expected in the body", payload.getNextSibling());
+        Assert.assertEquals(Node.ELEMENT_NODE, payload.getNodeType());
+        Assert.assertEquals(NAMESPACE, payload.getNamespaceURI());
+        Assert.assertEquals("sayHello", payload.getLocalName());
+        Assert.assertEquals(arg0, payload.getTextContent());
+    }
+
+    private static Document parse(String xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+    }
+
+    private static Message newMessage(final Object content) {
+        final Context context = newProxy(Context.class, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return null;
+            }
+        });
+        return newProxy(Message.class, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getContent")) {
+                    return content;
+                } else if (method.getName().equals("getContext")) {
+                    return context;
+                }
+                return null;
+            }
+        });
+    }
+
+    private static <T> T newProxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(DefaultMessageDecomposerTest.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+}
@@ -0,0 +1,106 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.wsdl.Operation;
+import javax.wsdl.Port;
+import javax.wsdl.Service;
+import javax.xml.namespace.QName;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.switchyard.component.soap.util.WSDLUtil;
+import org.switchyard.metadata.BaseExchangeContract;
+import org.switchyard.metadata.InOnlyOperation;
+import org.switchyard.metadata.InOutOperation;
+
+/**
+ * Tests for DispatchTable.
+ */
+public class DispatchTableTest {
+    private static final String NAMESPACE = "urn:switchyard-component-soap:test-ws:1.0";
+    private static final int NO_OF_OPERATIONS = 60;
+
+    private Port _port;
+    private DispatchTable _table;
+
+    @Before
+    public void setUp() throws Exception {
+        PortName portName = new PortName(null);
+        Service service = WSDLUtil.getService("ManyOperationsService.wsdl", portName);
+        _port = WSDLUtil.getPort(service, portName);
+        Map<String, BaseExchangeContract> contracts = new HashMap<String, BaseExchangeContract>();
+        for (Object operation : _port.getBinding().getPortType().getOperations()) {
+            String name = ((Operation) operation).getName();
+            if (WSDLUtil.isOneWay((Operation) operation)) {
+                contracts.put(name, new BaseExchangeContract(new InOnlyOperation(name)));
+            } else {
+                contracts.put(name, new BaseExchangeContract(new InOutOperation(name)));
+            }
+        }
+        _table = new DispatchTable(_port, contracts);
+    }
+
+    @Test
+    public void lookupByPayload() throws Exception {
+        for (int i = 0; i < NO_OF_OPERATIONS; i++) {
+            String name = "operation" + i;
+            DispatchTable.Entry entry = _table.lookup(new QName(NAMESPACE, name), null);
+            Assert.assertNotNull(entry);
+            Assert.assertSame(WSDLUtil.getOperation(_port, name), entry.getOperation());
+            Assert.assertEquals(WSDLUtil.isOneWay(_port, name), entry.isOneWay());
+            Assert.assertEquals(WSDLUtil.getMessageQName(_port, name), entry.getInputQName());
+            Assert.assertEquals(name, entry.getContract().getServiceOperation().getName());
+        }
+    }
+
+    @Test
+    public void lookupBySoapAction() throws Exception {
+        DispatchTable.Entry entry = _table.lookup(null, "urn:operation7");
+        Assert.assertNotNull(entry);
+        Assert.assertEquals("operation7", entry.getOperation().getName());
+        // The payload takes precedence over the SOAPAction
+        entry = _table.lookup(new QName(NAMESPACE, "operation3"), "urn:operation7");
+        Assert.assertEquals("operation3", entry.getOperation().getName());
+        // A SOAPAction shared by several operations is not used for routing
+        Assert.assertNull(_table.lookup(null, "urn:shared"));
+    }
+
+    @Test
+    public void lookupByName() throws Exception {
+        // Wrong namespace still finds the operation so the mismatch can be reported
+        DispatchTable.Entry entry = _table.lookup(new QName("urn:other", "operation5"), null);
+        Assert.assertNotNull(entry);
+        Assert.assertEquals("operation5", entry.getOperation().getName());
+        Assert.assertSame(entry, _table.getEntry("operation5"));
+    }
+
+    @Test
+    public void unknownOperation() throws Exception {
+        Assert.assertNull(_table.lookup(new QName(NAMESPACE, "operation" + NO_OF_OPERATIONS), null));
+        Assert.assertNull(_table.lookup(null, "urn:unknown"));
+        Assert.assertNull(_table.lookup(null, null));
+        Assert.assertNull(_table.getEntry("unknown"));
+    }
+}
@@ -0,0 +1,144 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.switchyard.component.soap.metrics.GatewayMetrics;
+import org.switchyard.component.soap.metrics.Histogram;
+import org.switchyard.component.soap.metrics.OperationMetrics;
+
+/**
+ * Tests for the SOAP gateway metrics.
+ */
+public class GatewayMetricsTest {
+
+    @Test
+    public void histogramPercentiles() throws Exception {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value);
+        }
+        Assert.assertEquals(100000, histogram.getCount());
+        Assert.assertEquals(50000.5, histogram.getMean(), 0.001);
+        Assert.assertEquals(100000, histogram.getMax());
+        // Within one sub bucket, 1/16 of the value
+        assertClose(50000, histogram.getValueAtPercentile(50.0));
+        assertClose(99000, histogram.getValueAtPercentile(99.0));
+        assertClose(99900, histogram.getValueAtPercentile(99.9));
+        Assert.assertEquals(100000, histogram.getValueAtPercentile(100.0));
+        // Small values are exact
+        Assert.assertEquals(1, histogram.getValueAtPercentile(0.001));
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getValueAtPercentile(99.0));
+    }
+
+    @Test
+    public void histogramExtremes() throws Exception {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        Assert.assertEquals(0, histogram.getValueAtPercentile(50.0));
+        Assert.assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100.0));
+    }
+
+    @Test
+    public void operationCounts() throws Exception {
+        OperationMetrics metrics = new OperationMetrics("sayHello");
+        long start = metrics.begin();
+        Assert.assertEquals(1, metrics.getInFlight());
+        metrics.end(start, false);
+        metrics.end(metrics.begin(), true);
+        metrics.timedOut(metrics.begin());
+        metrics.begin();
+        metrics.recordPayloadSize(-1);
+        metrics.recordPayloadSize(2048);
+
+        Assert.assertEquals(4, metrics.getRequestCount());
+        Assert.assertEquals(1, metrics.getFaultCount());
+        Assert.assertEquals(1, metrics.getTimeoutCount());
+        Assert.assertEquals(1, metrics.getInFlight());
+        Assert.assertEquals(3, metrics.getLatency().getCount());
+        Assert.assertEquals(1, metrics.getPayloadSize().getCount());
+        Assert.assertEquals(2048, metrics.getPayloadSizeMax());
+    }
+
+    @Test
+    public void registerMBeans() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.switchyard.component.soap:type=InboundGateway,service=" + ObjectName.quote("{urn:test}HelloService"));
+        ObjectName operation = new ObjectName(name + ",operation=\"sayHello\"");
+        ObjectName later = new ObjectName(name + ",operation=\"sayBye\"");
+
+        GatewayMetrics metrics = new GatewayMetrics(new TestGauges());
+        metrics.getOperation("sayHello").end(metrics.getOperation("sayHello").begin(), true);
+        metrics.unrouted();
+        metrics.register(server, name);
+        try {
+            Assert.assertEquals(1L, server.getAttribute(name, "RequestCount"));
+            Assert.assertEquals(1L, server.getAttribute(name, "FaultCount"));
+            Assert.assertEquals(1L, server.getAttribute(name, "UnroutedCount"));
+            Assert.assertEquals(3, server.getAttribute(name, "QueueDepth"));
+            Assert.assertEquals(1L, server.getAttribute(operation, "FaultCount"));
+
+            // Operations first used after registration are registered too
+            metrics.getOperation("sayBye").begin();
+            Assert.assertEquals(1, server.getAttribute(later, "InFlight"));
+            Assert.assertEquals(1, server.getAttribute(name, "InFlight"));
+
+            server.invoke(name, "reset", null, null);
+            Assert.assertEquals(0L, server.getAttribute(operation, "RequestCount"));
+        } finally {
+            metrics.unregister();
+        }
+        Assert.assertFalse(server.isRegistered(name));
+        Assert.assertFalse(server.isRegistered(operation));
+        Assert.assertFalse(server.isRegistered(later));
+    }
+
+    private static void assertClose(long expected, long actual) {
+        Assert.assertTrue("Expected about " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 16);
+    }
+
+    private static final class TestGauges implements GatewayMetrics.Gauges {
+        public int getQueueDepth() {
+            return 3;
+        }
+
+        public int getActiveThreads() {
+            return 0;
+        }
+
+        public int getAdmissionQueueDepth() {
+            return 0;
+        }
+
+        public long getRejectedCount() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap;
+
+import java.io.ByteArrayInputStream;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.switchyard.component.soap.util.LazyDOMSource;
+import org.switchyard.component.soap.util.SOAPUtil;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Tests for LazyDOMSource.
+ */
+public class LazyDOMSourceTest {
+    private static final String PAYLOAD = "<!-- Comment --><test:sayHello xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\">"
+                     + "   <arg0>Hello</arg0>"
+                     + "</test:sayHello>";
+
+    @Test
+    public void rootQNameFromStream() throws Exception {
+        LazyDOMSource source = LazyDOMSource.create(new StreamSource(new ByteArrayInputStream(PAYLOAD.getBytes("UTF-8"))));
+        Assert.assertEquals(new QName("urn:switchyard-component-soap:test-ws:1.0", "sayHello"), source.getRootQName());
+    }
+
+    @Test
+    public void rootQNameFromDom() throws Exception {
+        Element element = SOAPUtil.parseAsDom(PAYLOAD).getDocumentElement();
+        LazyDOMSource source = LazyDOMSource.create(new DOMSource(element));
+        Assert.assertEquals(new QName("urn:switchyard-component-soap:test-ws:1.0", "sayHello"), source.getRootQName());
+    }
+
+    @Test
+    public void nodeBuiltOnDemand() throws Exception {
+        LazyDOMSource source = new LazyDOMSource(PAYLOAD.getBytes("UTF-8"));
+        Node node = source.getNode();
+        Assert.assertEquals("sayHello", node.getLocalName());
+        Assert.assertEquals("Hello", node.getTextContent().trim());
+        Assert.assertSame(node, source.getNode());
+    }
+}
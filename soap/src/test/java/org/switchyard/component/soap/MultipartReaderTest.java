@@ -0,0 +1,143 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.switchyard.component.soap.util.AttachmentDataSource;
+import org.switchyard.component.soap.util.MultipartReader;
+
+/**
+ * Tests for MultipartReader and AttachmentDataSource.
+ */
+public class MultipartReaderTest {
+    private static final String BOUNDARY = "uuid:1234";
+    private static final String PACKAGE = "preamble\r\n"
+            + "--" + BOUNDARY + "\r\n"
+            + "Content-Type: application/xop+xml;\r\n"
+            + "\tcharset=utf-8\r\n"
+            + "Content-ID: <root>\r\n"
+            + "\r\n"
+            + "<envelope/>\r\n"
+            + "--" + BOUNDARY + "  \r\n"
+            + "content-id: <doc@test>\r\n"
+            + "\r\n"
+            + "line\r\n--uuid:12 not a boundary\r\n-\r\n"
+            + "--" + BOUNDARY + "--";
+
+    @Test
+    public void readParts() throws Exception {
+        // One byte at a time, so delimiters are split across reads
+        MultipartReader reader = new MultipartReader(new TrickleInputStream(bytes(PACKAGE)), BOUNDARY);
+        Assert.assertTrue(reader.nextPart());
+        Assert.assertEquals("application/xop+xml; charset=utf-8", reader.getHeader("Content-Type"));
+        Assert.assertEquals("<root>", reader.getHeader("content-id"));
+        Assert.assertEquals("<envelope/>", read(reader.getPartStream()));
+
+        Assert.assertTrue(reader.nextPart());
+        Assert.assertEquals("<doc@test>", reader.getHeader("Content-ID"));
+        Assert.assertNull(reader.getHeader("Content-Type"));
+        Assert.assertEquals("line\r\n--uuid:12 not a boundary\r\n-", read(reader.getPartStream()));
+
+        Assert.assertFalse(reader.nextPart());
+        Assert.assertFalse(reader.nextPart());
+    }
+
+    @Test
+    public void skipUnreadParts() throws Exception {
+        MultipartReader reader = new MultipartReader(new ByteArrayInputStream(bytes(PACKAGE)), BOUNDARY);
+        Assert.assertTrue(reader.nextPart());
+        Assert.assertTrue(reader.nextPart());
+        Assert.assertEquals("<doc@test>", reader.getHeader("Content-ID"));
+        Assert.assertFalse(reader.nextPart());
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedPackage() throws Exception {
+        MultipartReader reader = new MultipartReader(new ByteArrayInputStream(bytes(PACKAGE.substring(0, PACKAGE.length() - 20))), BOUNDARY);
+        while (reader.nextPart()) {
+            read(reader.getPartStream());
+        }
+    }
+
+    @Test
+    public void keepSmallAttachmentsInMemory() throws Exception {
+        AttachmentDataSource source = AttachmentDataSource.read(new ByteArrayInputStream(bytes("small")), "text/plain", "doc@test", 16, null);
+        Assert.assertFalse(source.isSpilled());
+        Assert.assertEquals(5, source.getSize());
+        Assert.assertEquals("text/plain", source.getContentType());
+        Assert.assertEquals("small", read(source.getInputStream()));
+    }
+
+    @Test
+    public void spillLargeAttachments() throws Exception {
+        byte[] content = new byte[100000];
+        Arrays.fill(content, (byte) 'x');
+        AttachmentDataSource source = AttachmentDataSource.read(new ByteArrayInputStream(content), null, "doc@test", 16, null);
+        Assert.assertTrue(source.isSpilled());
+        Assert.assertEquals(content.length, source.getSize());
+        Assert.assertEquals("application/octet-stream", source.getContentType());
+        // Can be read more than once
+        Assert.assertEquals(new String(content, "US-ASCII"), read(source.getInputStream()));
+        Assert.assertEquals(new String(content, "US-ASCII"), read(source.getInputStream()));
+        source.dispose();
+        Assert.assertFalse(source.isSpilled());
+        try {
+            source.getInputStream();
+            Assert.fail("Disposed attachment was readable");
+        } catch (IOException ioe) {
+            // expected
+        }
+    }
+
+    private static byte[] bytes(final String s) throws IOException {
+        return s.getBytes("US-ASCII");
+    }
+
+    private static String read(final InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[3];
+        int read = in.read(buffer);
+        while (read > -1) {
+            out.write(buffer, 0, read);
+            read = in.read(buffer);
+        }
+        in.close();
+        return out.toString("US-ASCII");
+    }
+
+    private static final class TrickleInputStream extends FilterInputStream {
+        private TrickleInputStream(final byte[] content) {
+            super(new ByteArrayInputStream(content));
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+}
@@ -29,28 +29,45 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.activation.DataHandler;
 import javax.xml.namespace.QName;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
 import org.custommonkey.xmlunit.XMLAssert;
 import org.custommonkey.xmlunit.XMLUnit;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.switchyard.BaseHandler;
+import org.switchyard.Exchange;
+import org.switchyard.ExchangePattern;
+import org.switchyard.HandlerException;
 import org.switchyard.Message;
 import org.switchyard.ServiceDomain;
 import org.switchyard.component.soap.config.model.SOAPBindingModel;
+import org.switchyard.component.soap.util.AttachmentDataSource;
+import org.switchyard.component.soap.util.LazyDOMSource;
 import org.switchyard.component.soap.util.SOAPUtil;
+import org.switchyard.component.soap.util.XMLHelper;
 import org.switchyard.config.model.ModelResource;
 import org.switchyard.config.model.composite.CompositeModel;
 import org.switchyard.config.model.composite.CompositeServiceModel;
@@ -70,14 +87,27 @@ import org.w3c.dom.Element;
 public class SOAPGatewayTest extends SwitchYardTestCase {
     private static final QName WS_CONSUMER_SERVICE = new QName("webservice-consumer");
     private static final QName WS_CONSUMER_CLASSPATH_WSDL = new QName("webservice-consumer-classpath-wsdl");
+    private static final QName WS_ASYNC_CONSUMER_SERVICE = new QName("webservice-async-consumer");
+    private static final QName WS_PASSTHROUGH_CONSUMER_SERVICE = new QName("webservice-passthrough-consumer");
+    private static final QName PASSTHROUGH_RELAY_SERVICE = new QName("passthrough-relay");
+    private static final QName MTOM_SERVICE = new QName("mtom-upload");
+    private static final QName BLOCKING_SERVICE = new QName("blocking");
+    private static final QName SILENT_SERVICE = new QName("silent");
+    private static final QName STREAMING_SERVICE = new QName("streaming");
+    private static final QName COUNTING_SERVICE = new QName("counting");
+    private static final QName WS_POOLED_CONSUMER_SERVICE = new QName("webservice-pooled-consumer");
+    private static final QName WS_TIMEOUT_CONSUMER_SERVICE = new QName("webservice-timeout-consumer");
     private static final int DEFAULT_THREAD_COUNT = 10;
     private static final long DEFAULT_NO_OF_THREADS = 100;
 
     private static URL _serviceURL;
+    private static URL _asyncServiceURL;
     private ServiceDomain _domain;
     private SOAPGateway _soapInbound;
+    private SOAPGateway _soapAsyncInbound;
     private SOAPGateway _soapOutbound;
     private SOAPGateway _soapOutbound2;
+    private SOAPGateway _soapAsyncOutbound;
     private long _noOfThreads = DEFAULT_NO_OF_THREADS;
     
     private static ModelResource<CompositeModel> _res;
@@ -85,9 +115,15 @@ public class SOAPGatewayTest extends SwitchYardTestCase {
     private class WebServiceInvoker implements Callable<String> {
 
         private long _threadNo;
+        private URL _url;
 
         public WebServiceInvoker(long threadNo) {
+            this(threadNo, _serviceURL);
+        }
+
+        public WebServiceInvoker(long threadNo, URL url) {
             _threadNo = threadNo;
+            _url = url;
         }
 
         public String call() {
@@ -99,13 +135,14 @@ public class SOAPGatewayTest extends SwitchYardTestCase {
             String output = null;
 
             try {
-                HttpURLConnection con = (HttpURLConnection) _serviceURL.openConnection();
+                HttpURLConnection con = (HttpURLConnection) _url.openConnection();
                 con.setDoInput(true);
                 con.setDoOutput(true);
                 con.setRequestProperty("Content-type", "text/xml; charset=utf-8");
                 OutputStream outStream = con.getOutputStream();
                 outStream.write(input.getBytes());
-                InputStream inStream = con.getInputStream();
+                // Faults come back with a 500 status
+                InputStream inStream = (con.getResponseCode() < HttpURLConnection.HTTP_INTERNAL_ERROR) ? con.getInputStream() : con.getErrorStream();
                 ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
                 byte[] byteBuf = new byte[256];
                 int len = inStream.read(byteBuf);
@@ -164,6 +201,19 @@ public class SOAPGatewayTest extends SwitchYardTestCase {
 
         _serviceURL = new URL("http://" + host + ":" + port + "/HelloWebService");
 
+        // Same service exposed as an asynchronous WS
+        _soapAsyncInbound = new SOAPGateway();
+        SOAPBindingModel asyncConfig = (SOAPBindingModel)_res.pull("/HelloSwitchYard.xml").getServices().get(0).getBindings().get(0);
+        asyncConfig.setPublishAsWS(true);
+        asyncConfig.setAsync(true);
+        asyncConfig.setServerHost(host);
+        asyncConfig.setServerPort(Integer.parseInt(port));
+        asyncConfig.setContextPath("async");
+        _soapAsyncInbound.init(asyncConfig, _domain);
+        _soapAsyncInbound.start();
+
+        _asyncServiceURL = new URL("http://" + host + ":" + port + "/async/HelloWebService");
+
         // A WS Consumer as Service
         _soapOutbound = new SOAPGateway();
         SOAPBindingModel config2 = new SOAPBindingModel();
@@ -179,6 +229,15 @@ public class SOAPGatewayTest extends SwitchYardTestCase {
         _soapOutbound2.init(config3, _domain);
         _soapOutbound2.start();
 
+        // A WS Consumer as Service that does not block on the remote call
+        _soapAsyncOutbound = new SOAPGateway();
+        SOAPBindingModel config4 = new SOAPBindingModel();
+        config4.setWsdl(_serviceURL.toExternalForm() + "?wsdl");
+        config4.setServiceName(WS_ASYNC_CONSUMER_SERVICE);
+        config4.setAsync(true);
+        _soapAsyncOutbound.init(config4, _domain);
+        _soapAsyncOutbound.start();
+
         XMLUnit.setIgnoreWhitespace(true);
     }
     
@@ -186,10 +245,14 @@ public class SOAPGatewayTest extends SwitchYardTestCase {
     public void tearDown() throws Exception {
         _soapOutbound.stop();
         _soapOutbound2.stop();
+        _soapAsyncOutbound.stop();
         _soapInbound.stop();
+        _soapAsyncInbound.stop();
         _soapInbound.destroy();
+        _soapAsyncInbound.destroy();
         _soapOutbound.destroy();
         _soapOutbound2.destroy();
+        _soapAsyncOutbound.destroy();
     }
 
     @Test
@@ -235,6 +298,81 @@ public class SOAPGatewayTest extends SwitchYardTestCase {
         XMLAssert.assertXMLEqual(output, response);
     }
 
+    @Test
+    public void invokeRequestResponseMultiThreaded() throws Exception {
+        invokeConsumerMultiThreaded(WS_CONSUMER_SERVICE);
+    }
+
+    @Test
+    public void invokeAsyncRequestResponse() throws Exception {
+        String input = "<test:sayHello xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\">"
+                     + "   <arg0>Jimbo</arg0>"
+                     + "</test:sayHello>";
+
+        String output = "<test:sayHelloResponse xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\">"
+                     + "   <return>Hello Jimbo</return>"
+                     + "</test:sayHelloResponse>";
+
+        Message responseMsg = newInvoker(WS_ASYNC_CONSUMER_SERVICE).sendInOut(input);
+
+        String response = toString(responseMsg.getContent(Element.class));
+        XMLAssert.assertXMLEqual(output, response);
+    }
+
+    @Test
+    public void invokeAsyncRequestResponseFault() throws Exception {
+        String input = "<test:sayHello xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\">"
+                     + "   <arg0></arg0>"
+                     + "</test:sayHello>";
+
+        String output = "<soap:Fault xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+                        + "   <faultcode>soap:Server.AppError</faultcode>"
+                        + "   <faultstring>Invalid name</faultstring>"
+                        + "   <detail>"
+                        + "      <message>Looks like you did not specify a name!</message>"
+                        + "      <errorcode>1000</errorcode>"
+                        + "   </detail>"
+                        + "</soap:Fault>";
+
+        Message responseMsg = newInvoker(WS_ASYNC_CONSUMER_SERVICE).sendInOut(input);
+        String response = toString(responseMsg.getContent(Element.class));
+        XMLAssert.assertXMLEqual(output, response);
+    }
+
+    @Test
+    public void invokeAsyncRequestResponseMultiThreaded() throws Exception {
+        invokeConsumerMultiThreaded(WS_ASYNC_CONSUMER_SERVICE);
+    }
+
+    private void invokeConsumerMultiThreaded(final QName consumerService) throws Exception {
+        Collection<Callable<String>> callables = new ArrayList<Callable<String>>();
+        for (int i = 0; i < _noOfThreads; i++) {
+            final long threadNo = i;
+            callables.add(new Callable<String>() {
+                public String call() throws Exception {
+                    String input = "<test:sayHello xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\">"
+                                 + "   <arg0>Thread " + threadNo + "</arg0>"
+                                 + "</test:sayHello>";
+                    Message responseMsg = newInvoker(consumerService).sendInOut(input);
+                    return SOAPGatewayTest.this.toString(responseMsg.getContent(Element.class));
+                }
+            });
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(DEFAULT_THREAD_COUNT);
+        Collection<Future<String>> futures = executorService.invokeAll(callables);
+        Assert.assertEquals(futures.size(), _noOfThreads);
+        int i = 0;
+
+        for (Future<String> future : futures) {
+            String output = "<test:sayHelloResponse xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\">"
+                     + "   <return>Hello Thread " + i + "</return>"
+                     + "</test:sayHelloResponse>";
+            XMLAssert.assertXMLEqual(output, future.get());
+            i++;
+        }
+    }
+
     private String toString(Element element) throws Exception
     {
         TransformerFactory transFactory = TransformerFactory.newInstance();
@@ -292,6 +430,522 @@ public class SOAPGatewayTest extends SwitchYardTestCase {
         }
     }
 
+    @Test
+    public void invokeAsyncMultiThreaded() throws Exception {
+        Collection<Callable<String>> callables = new ArrayList<Callable<String>>();
+        for (int i = 0; i < _noOfThreads; i++) {
+            callables.add(new WebServiceInvoker(i, _asyncServiceURL));
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(DEFAULT_THREAD_COUNT);
+        Collection<Future<String>> futures = executorService.invokeAll(callables);
+        Assert.assertEquals(futures.size(), _noOfThreads);
+        int i = 0;
+
+        for (Future<String> future : futures) {
+            String output =  "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>"
+                     + "   <test:sayHelloResponse xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\">"
+                     + "      <return>Hello Thread " + i + "</return>"
+                     + "   </test:sayHelloResponse>"
+                     + "</soap:Body></soap:Envelope>";
+            XMLAssert.assertXMLEqual(output, future.get());
+            i++;
+        }
+    }
+
+    @Test
+    public void invokeOnSharedServer() throws Exception {
+        String host = System.getProperty("org.switchyard.test.soap.host", "localhost");
+        int port = Integer.parseInt(System.getProperty("org.switchyard.test.soap.port", "48080")) + 1;
+
+        List<SOAPGateway> gateways = new ArrayList<SOAPGateway>();
+        try {
+            for (String contextPath : new String[] {"shared1", "shared2"}) {
+                SOAPGateway gateway = new SOAPGateway();
+                SOAPBindingModel sharedConfig = (SOAPBindingModel)_res.pull("/HelloSwitchYard.xml").getServices().get(0).getBindings().get(0);
+                sharedConfig.setPublishAsWS(true);
+                sharedConfig.setSharedServer(true);
+                sharedConfig.setServerHost(host);
+                sharedConfig.setServerPort(port);
+                sharedConfig.setContextPath(contextPath);
+                gateway.init(sharedConfig, _domain);
+                gateway.start();
+                gateways.add(gateway);
+            }
+
+            for (String contextPath : new String[] {"shared1", "shared2"}) {
+                URL url = new URL("http://" + host + ":" + port + "/" + contextPath + "/HelloWebService");
+                String output = "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>"
+                         + "   <test:sayHelloResponse xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\">"
+                         + "      <return>Hello Thread 0</return>"
+                         + "   </test:sayHelloResponse>"
+                         + "</soap:Body></soap:Envelope>";
+                XMLAssert.assertXMLEqual(output, new WebServiceInvoker(0, url).call());
+            }
+        } finally {
+            for (SOAPGateway gateway : gateways) {
+                gateway.stop();
+                gateway.destroy();
+            }
+        }
+    }
+
+    @Test
+    public void invokeWhenOverloaded() throws Exception {
+        String host = System.getProperty("org.switchyard.test.soap.host", "localhost");
+        String port = System.getProperty("org.switchyard.test.soap.port", "48080");
+
+        SOAPGateway gateway = new SOAPGateway();
+        SOAPBindingModel limitedConfig = (SOAPBindingModel)_res.pull("/HelloSwitchYard.xml").getServices().get(0).getBindings().get(0);
+        limitedConfig.setPublishAsWS(true);
+        limitedConfig.setServerHost(host);
+        limitedConfig.setServerPort(Integer.parseInt(port));
+        limitedConfig.setContextPath("limited");
+        // No request is admitted, so every one is rejected at once
+        limitedConfig.setAdmissionMaxInFlight(0);
+        limitedConfig.setAdmissionRetryAfter(5);
+        gateway.init(limitedConfig, _domain);
+        gateway.start();
+        try {
+            URL url = new URL("http://" + host + ":" + port + "/limited/HelloWebService");
+            String output = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\"><SOAP-ENV:Header/><SOAP-ENV:Body>"
+                     + "   <SOAP-ENV:Fault>"
+                     + "      <faultcode>SOAP-ENV:Server</faultcode>"
+                     + "      <faultstring>Service '" + limitedConfig.getServiceName() + "' is overloaded, retry after 5 seconds.</faultstring>"
+                     + "      <detail>"
+                     + "         <sy:retryAfter xmlns:sy=\"urn:switchyard-component-soap:fault:1.0\">5</sy:retryAfter>"
+                     + "      </detail>"
+                     + "   </SOAP-ENV:Fault>"
+                     + "</SOAP-ENV:Body></SOAP-ENV:Envelope>";
+            XMLAssert.assertXMLEqual(output, new WebServiceInvoker(0, url).call());
+        } finally {
+            gateway.stop();
+            gateway.destroy();
+        }
+    }
+
+    @Test
+    public void invokeWhenReplyTimesOut() throws Exception {
+        invokeWhenReplyTimesOut(false, "timeout");
+    }
+
+    @Test
+    public void invokeAsyncWhenReplyTimesOut() throws Exception {
+        invokeWhenReplyTimesOut(true, "asynctimeout");
+    }
+
+    private void invokeWhenReplyTimesOut(boolean async, String contextPath) throws Exception {
+        String host = System.getProperty("org.switchyard.test.soap.host", "localhost");
+        String port = System.getProperty("org.switchyard.test.soap.port", "48080");
+
+        _domain.registerService(SILENT_SERVICE, new SilentProvider(), new HelloWebServiceInterface());
+        SOAPBindingModel timeoutConfig = (SOAPBindingModel)_res.pull("/HelloSwitchYard.xml").getServices().get(0).getBindings().get(0);
+        timeoutConfig.setServiceName(SILENT_SERVICE);
+        timeoutConfig.setPublishAsWS(true);
+        timeoutConfig.setAsync(async);
+        timeoutConfig.setServerHost(host);
+        timeoutConfig.setServerPort(Integer.parseInt(port));
+        timeoutConfig.setContextPath(contextPath);
+        // The operation timeout overrides a default this test would not wait for
+        timeoutConfig.setTimeout(60000);
+        timeoutConfig.setOperationTimeout("sayHello", 500);
+        timeoutConfig.setOperationTimeout("sayGoodbye", 500);
+
+        InboundHandler handler = new InboundHandler(timeoutConfig);
+        WarningAppender warnings = new WarningAppender();
+        Logger.getLogger(InboundHandler.class).addAppender(warnings);
+        try {
+            handler.start(_domain.getService(SILENT_SERVICE));
+        } finally {
+            Logger.getLogger(InboundHandler.class).removeAppender(warnings);
+        }
+        try {
+            Assert.assertTrue(warnings._messages.toString(),
+                    warnings._messages.contains("Ignoring timeout for unknown operation 'sayGoodbye' on service '" + SILENT_SERVICE + "'."));
+            Assert.assertEquals(0, handler.getTimeoutCount());
+
+            URL url = new URL("http://" + host + ":" + port + "/" + contextPath + "/HelloWebService");
+            String output = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\"><SOAP-ENV:Header/><SOAP-ENV:Body>"
+                     + "   <SOAP-ENV:Fault>"
+                     + "      <faultcode>SOAP-ENV:Server</faultcode>"
+                     + "      <faultstring>Timed out after 500ms waiting for a response from operation 'sayHello' on service '" + SILENT_SERVICE + "'.</faultstring>"
+                     + "   </SOAP-ENV:Fault>"
+                     + "</SOAP-ENV:Body></SOAP-ENV:Envelope>";
+            XMLAssert.assertXMLEqual(output, new WebServiceInvoker(0, url).call());
+            Assert.assertEquals(1, handler.getTimeoutCount());
+            Assert.assertEquals(1, handler.getMetrics().getOperation("sayHello").getTimeoutCount());
+        } finally {
+            handler.stop();
+        }
+    }
+
+    @Test
+    public void invokeWithMaxConnections() throws Exception {
+        String host = System.getProperty("org.switchyard.test.soap.host", "localhost");
+        String port = System.getProperty("org.switchyard.test.soap.port", "48080");
+
+        CountingProvider provider = new CountingProvider();
+        _domain.registerService(COUNTING_SERVICE, provider, new HelloWebServiceInterface());
+        SOAPGateway gateway = new SOAPGateway();
+        SOAPBindingModel countingConfig = (SOAPBindingModel)_res.pull("/HelloSwitchYard.xml").getServices().get(0).getBindings().get(0);
+        countingConfig.setServiceName(COUNTING_SERVICE);
+        countingConfig.setPublishAsWS(true);
+        countingConfig.setServerHost(host);
+        countingConfig.setServerPort(Integer.parseInt(port));
+        countingConfig.setContextPath("counting");
+        gateway.init(countingConfig, _domain);
+        gateway.start();
+
+        // A WS Consumer that keeps at most two requests on the wire
+        SOAPGateway consumer = new SOAPGateway();
+        SOAPBindingModel consumerConfig = new SOAPBindingModel();
+        consumerConfig.setWsdl("http://" + host + ":" + port + "/counting/HelloWebService?wsdl");
+        consumerConfig.setServiceName(WS_POOLED_CONSUMER_SERVICE);
+        consumerConfig.setConnectTimeout(30000);
+        consumerConfig.setReadTimeout(30000);
+        consumerConfig.setMaxConnections(2);
+        consumer.init(consumerConfig, _domain);
+        consumer.start();
+        try {
+            invokeConsumerMultiThreaded(WS_POOLED_CONSUMER_SERVICE);
+            Assert.assertTrue("Peak of " + provider._peak + " concurrent requests", provider._peak.get() <= 2);
+            Assert.assertTrue(provider._peak.get() > 0);
+        } finally {
+            consumer.stop();
+            consumer.destroy();
+            gateway.stop();
+            gateway.destroy();
+        }
+    }
+
+    @Test
+    public void invokeWhenReadTimesOut() throws Exception {
+        String host = System.getProperty("org.switchyard.test.soap.host", "localhost");
+        String port = System.getProperty("org.switchyard.test.soap.port", "48080");
+
+        _domain.registerService(SILENT_SERVICE, new SilentProvider(), new HelloWebServiceInterface());
+        SOAPGateway gateway = new SOAPGateway();
+        SOAPBindingModel silentConfig = (SOAPBindingModel)_res.pull("/HelloSwitchYard.xml").getServices().get(0).getBindings().get(0);
+        silentConfig.setServiceName(SILENT_SERVICE);
+        silentConfig.setPublishAsWS(true);
+        silentConfig.setServerHost(host);
+        silentConfig.setServerPort(Integer.parseInt(port));
+        silentConfig.setContextPath("readtimeout");
+        // Longer than the read timeout of the consumer, so the consumer gives up first
+        silentConfig.setTimeout(10000);
+        gateway.init(silentConfig, _domain);
+        gateway.start();
+
+        SOAPGateway consumer = new SOAPGateway();
+        SOAPBindingModel consumerConfig = new SOAPBindingModel();
+        consumerConfig.setWsdl("http://" + host + ":" + port + "/readtimeout/HelloWebService?wsdl");
+        consumerConfig.setServiceName(WS_TIMEOUT_CONSUMER_SERVICE);
+        consumerConfig.setConnectTimeout(30000);
+        consumerConfig.setReadTimeout(500);
+        consumer.init(consumerConfig, _domain);
+        consumer.start();
+        try {
+            String input = "<test:sayHello xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\">"
+                         + "   <arg0>Jimbo</arg0>"
+                         + "</test:sayHello>";
+            String rootCause = null;
+            long start = System.currentTimeMillis();
+            try {
+                newInvoker(WS_TIMEOUT_CONSUMER_SERVICE).sendInOut(input);
+            } catch (InvocationFaultException ife) {
+                rootCause = getRootCause(ife);
+            }
+            Assert.assertEquals("java.net.SocketTimeoutException: Read timed out", rootCause);
+            Assert.assertTrue(System.currentTimeMillis() - start < 10000);
+        } finally {
+            consumer.stop();
+            consumer.destroy();
+            gateway.stop();
+            gateway.destroy();
+        }
+    }
+
+    @Test
+    public void invokeWhenExecutorFull() throws Exception {
+        String host = System.getProperty("org.switchyard.test.soap.host", "localhost");
+        String port = System.getProperty("org.switchyard.test.soap.port", "48080");
+
+        BlockingProvider provider = new BlockingProvider();
+        _domain.registerService(BLOCKING_SERVICE, provider, new HelloWebServiceInterface());
+        SOAPGateway gateway = new SOAPGateway();
+        SOAPBindingModel executorConfig = (SOAPBindingModel)_res.pull("/HelloSwitchYard.xml").getServices().get(0).getBindings().get(0);
+        executorConfig.setServiceName(BLOCKING_SERVICE);
+        executorConfig.setPublishAsWS(true);
+        executorConfig.setServerHost(host);
+        executorConfig.setServerPort(Integer.parseInt(port));
+        executorConfig.setContextPath("executor");
+        // One thread and no queue, so a request is rejected while another one runs
+        executorConfig.setExecutorThreads(1);
+        executorConfig.setExecutorQueueSize(0);
+        gateway.init(executorConfig, _domain);
+        gateway.start();
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            URL url = new URL("http://" + host + ":" + port + "/executor/HelloWebService");
+            Future<String> running = executorService.submit(new WebServiceInvoker(0, url));
+            Assert.assertTrue(provider._started.await(30, TimeUnit.SECONDS));
+
+            HttpURLConnection con = (HttpURLConnection) url.openConnection();
+            con.setDoOutput(true);
+            // Fail instead of waiting for a response that never comes
+            con.setReadTimeout(10000);
+            con.setRequestProperty("Content-type", "text/xml; charset=utf-8");
+            OutputStream outStream = con.getOutputStream();
+            outStream.write(("<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>"
+                     + "<test:sayHello xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\"><arg0>Thread 1</arg0></test:sayHello>"
+                     + "</soap:Body></soap:Envelope>").getBytes("UTF-8"));
+            outStream.close();
+            Assert.assertEquals(HttpURLConnection.HTTP_UNAVAILABLE, con.getResponseCode());
+
+            provider._release.countDown();
+            String output = "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>"
+                     + "   <test:sayHelloResponse xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\">"
+                     + "      <return>Hello Thread 0</return>"
+                     + "   </test:sayHelloResponse>"
+                     + "</soap:Body></soap:Envelope>";
+            XMLAssert.assertXMLEqual(output, running.get());
+        } finally {
+            provider._release.countDown();
+            executorService.shutdown();
+            gateway.stop();
+            gateway.destroy();
+        }
+    }
+
+    @Test
+    public void invokeStreaming() throws Exception {
+        String host = System.getProperty("org.switchyard.test.soap.host", "localhost");
+        String port = System.getProperty("org.switchyard.test.soap.port", "48080");
+
+        PayloadProvider provider = new PayloadProvider();
+        _domain.registerService(STREAMING_SERVICE, provider, new HelloWebServiceInterface());
+        SOAPGateway gateway = new SOAPGateway();
+        SOAPBindingModel streamingConfig = (SOAPBindingModel)_res.pull("/HelloSwitchYard.xml").getServices().get(0).getBindings().get(0);
+        streamingConfig.setServiceName(STREAMING_SERVICE);
+        streamingConfig.setPublishAsWS(true);
+        streamingConfig.setStreaming(true);
+        streamingConfig.setServerHost(host);
+        streamingConfig.setServerPort(Integer.parseInt(port));
+        streamingConfig.setContextPath("streaming");
+        gateway.init(streamingConfig, _domain);
+        gateway.start();
+        try {
+            URL url = new URL("http://" + host + ":" + port + "/streaming/HelloWebService");
+            String output = "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>"
+                     + "   <test:sayHelloResponse xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\">"
+                     + "      <return>Hello Thread 0</return>"
+                     + "   </test:sayHelloResponse>"
+                     + "</soap:Body></soap:Envelope>";
+            XMLAssert.assertXMLEqual(output, new WebServiceInvoker(0, url).call());
+            // Routed on the root element of the payload, which reached the service unparsed
+            Assert.assertEquals("sayHello", provider._operation);
+            Assert.assertEquals(LazyDOMSource.class, provider._requestType);
+
+            String response = post(url, "<test:sayBye xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\"><arg0>Thread 0</arg0></test:sayBye>");
+            Element fault = SOAPUtil.parseAsDom(response).getDocumentElement();
+            Assert.assertEquals(response, "Operation 'sayBye' not available on target Service '" + STREAMING_SERVICE + "'.",
+                    fault.getElementsByTagName("faultstring").item(0).getTextContent());
+            Assert.assertEquals("sayHello", provider._operation);
+        } finally {
+            gateway.stop();
+            gateway.destroy();
+        }
+    }
+
+    @Test
+    public void invokePassthrough() throws Exception {
+        String host = System.getProperty("org.switchyard.test.soap.host", "localhost");
+        String port = System.getProperty("org.switchyard.test.soap.port", "48080");
+
+        // Relays whole envelopes to the sync WS through a passthrough consumer
+        SOAPGateway consumer = new SOAPGateway();
+        SOAPBindingModel consumerConfig = new SOAPBindingModel();
+        consumerConfig.setWsdl(_serviceURL.toExternalForm() + "?wsdl");
+        consumerConfig.setServiceName(WS_PASSTHROUGH_CONSUMER_SERVICE);
+        consumerConfig.setPassthrough(true);
+        consumer.init(consumerConfig, _domain);
+        consumer.start();
+
+        RelayProvider relay = new RelayProvider();
+        _domain.registerService(PASSTHROUGH_RELAY_SERVICE, relay, new HelloWebServiceInterface());
+        SOAPGateway gateway = new SOAPGateway();
+        SOAPBindingModel passthroughConfig = (SOAPBindingModel)_res.pull("/HelloSwitchYard.xml").getServices().get(0).getBindings().get(0);
+        passthroughConfig.setServiceName(PASSTHROUGH_RELAY_SERVICE);
+        passthroughConfig.setPublishAsWS(true);
+        passthroughConfig.setPassthrough(true);
+        passthroughConfig.setServerHost(host);
+        passthroughConfig.setServerPort(Integer.parseInt(port));
+        passthroughConfig.setContextPath("passthrough");
+        gateway.init(passthroughConfig, _domain);
+        gateway.start();
+        try {
+            URL url = new URL("http://" + host + ":" + port + "/passthrough/HelloWebService");
+            String output = "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>"
+                     + "   <test:sayHelloResponse xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\">"
+                     + "      <return>Hello Thread 0</return>"
+                     + "   </test:sayHelloResponse>"
+                     + "</soap:Body></soap:Envelope>";
+            XMLAssert.assertXMLEqual(output, new WebServiceInvoker(0, url).call());
+            // The relay only ever saw buffered envelopes
+            Assert.assertEquals(LazyDOMSource.class, relay._requestType);
+            Assert.assertEquals(LazyDOMSource.class, relay._responseType);
+        } finally {
+            gateway.stop();
+            gateway.destroy();
+            consumer.stop();
+            consumer.destroy();
+        }
+    }
+
+    @Test
+    public void invokeWithMTOM() throws Exception {
+        String host = System.getProperty("org.switchyard.test.soap.host", "localhost");
+        int port = Integer.parseInt(System.getProperty("org.switchyard.test.soap.port", "48080")) + 2;
+
+        AttachmentProvider provider = new AttachmentProvider();
+        SOAPGateway gateway = startMTOMGateway(provider, host, port);
+        try {
+            HttpURLConnection con = postMTOM(new URL("http://" + host + ":" + port + "/mtom/HelloWebService"), "sayHello");
+            String output = "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>"
+                     + "   <test:sayHelloResponse xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\">"
+                     + "      <return>Hello doc@test of 819200 bytes</return>"
+                     + "   </test:sayHelloResponse>"
+                     + "</soap:Body></soap:Envelope>";
+            XMLAssert.assertXMLEqual(output, readResponse(con));
+            // The attachment never went into the SOAP body and was kept out of the heap
+            Assert.assertTrue(provider._spilled);
+        } finally {
+            gateway.stop();
+            gateway.destroy();
+        }
+    }
+
+    @Test
+    public void invokeOneWayWithMTOM() throws Exception {
+        String host = System.getProperty("org.switchyard.test.soap.host", "localhost");
+        int port = Integer.parseInt(System.getProperty("org.switchyard.test.soap.port", "48080")) + 2;
+
+        AttachmentProvider provider = new AttachmentProvider();
+        SOAPGateway gateway = startMTOMGateway(provider, host, port);
+        try {
+            URL url = new URL("http://" + host + ":" + port + "/mtom/HelloWebService");
+            HttpURLConnection con = postMTOM(url, "helloWS");
+            Assert.assertEquals(HttpURLConnection.HTTP_ACCEPTED, con.getResponseCode());
+            readResponse(con);
+            Assert.assertTrue(provider._received.await(30, TimeUnit.SECONDS));
+            // The next request on the kept alive connection is only read once the one-way exchange is closed
+            readResponse(postMTOM(url, "sayHello"));
+
+            // The service owns the attachments of a one-way request until it disposes of them
+            Map<String, DataHandler> attachments = provider._oneWayAttachments;
+            Assert.assertEquals("doc@test of 819200 bytes", describe(attachments));
+            AttachmentDataSource source = (AttachmentDataSource) attachments.get("doc@test").getDataSource();
+            Assert.assertTrue(source.isRetained());
+            source.dispose();
+            Assert.assertFalse(source.isSpilled());
+        } finally {
+            gateway.stop();
+            gateway.destroy();
+        }
+    }
+
+    @Test
+    public void publishMTOMWithoutSharedServer() throws Exception {
+        String host = System.getProperty("org.switchyard.test.soap.host", "localhost");
+        String port = System.getProperty("org.switchyard.test.soap.port", "48080");
+
+        SOAPBindingModel mtomConfig = (SOAPBindingModel)_res.pull("/HelloSwitchYard.xml").getServices().get(0).getBindings().get(0);
+        mtomConfig.setPublishAsWS(true);
+        mtomConfig.setMtom(true);
+        mtomConfig.setServerHost(host);
+        mtomConfig.setServerPort(Integer.parseInt(port));
+        mtomConfig.setContextPath("mtom");
+        try {
+            new InboundHandler(mtomConfig).start(_domain.getService(mtomConfig.getServiceName()));
+            Assert.fail("MTOM WebService published without a shared HTTP server");
+        } catch (WebServicePublishException wspe) {
+            Assert.assertTrue(wspe.getMessage(), wspe.getMessage().contains("set sharedServer"));
+        }
+    }
+
+    private SOAPGateway startMTOMGateway(AttachmentProvider provider, String host, int port) throws Exception {
+        _domain.registerService(MTOM_SERVICE, provider, new HelloWebServiceInterface());
+        SOAPGateway gateway = new SOAPGateway();
+        SOAPBindingModel mtomConfig = (SOAPBindingModel)_res.pull("/HelloSwitchYard.xml").getServices().get(0).getBindings().get(0);
+        mtomConfig.setServiceName(MTOM_SERVICE);
+        mtomConfig.setPublishAsWS(true);
+        mtomConfig.setMtom(true);
+        mtomConfig.setSharedServer(true);
+        mtomConfig.setAttachmentSpillThreshold(1024);
+        mtomConfig.setServerHost(host);
+        mtomConfig.setServerPort(port);
+        mtomConfig.setContextPath("mtom");
+        gateway.init(mtomConfig, _domain);
+        gateway.start();
+        return gateway;
+    }
+
+    private HttpURLConnection postMTOM(URL url, String operation) throws IOException {
+        String boundary = "uuid:switchyard-test";
+        HttpURLConnection con = (HttpURLConnection) url.openConnection();
+        con.setDoInput(true);
+        con.setDoOutput(true);
+        con.setChunkedStreamingMode(8192);
+        con.setRequestProperty("Content-type", "multipart/related; type=\"application/xop+xml\"; boundary=\"" + boundary
+                + "\"; start=\"<root@test>\"; start-info=\"text/xml\"");
+        OutputStream outStream = con.getOutputStream();
+        outStream.write(("--" + boundary + "\r\n"
+                + "Content-Type: application/xop+xml; charset=utf-8; type=\"text/xml\"\r\n"
+                + "Content-ID: <root@test>\r\n\r\n"
+                + "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>"
+                + "<test:" + operation + " xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\">"
+                + "<arg0><xop:Include xmlns:xop=\"http://www.w3.org/2004/08/xop/include\" href=\"cid:doc@test\"/></arg0>"
+                + "</test:" + operation + ">"
+                + "</soap:Body></soap:Envelope>\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Type: application/octet-stream\r\n"
+                + "Content-ID: <doc@test>\r\n\r\n").getBytes("UTF-8"));
+        byte[] content = new byte[8192];
+        for (int i = 0; i < 100; i++) {
+            outStream.write(content);
+        }
+        outStream.write(("\r\n--" + boundary + "--\r\n").getBytes("UTF-8"));
+        outStream.close();
+        return con;
+    }
+
+    private String post(URL url, String payload) throws IOException {
+        HttpURLConnection con = (HttpURLConnection) url.openConnection();
+        con.setDoInput(true);
+        con.setDoOutput(true);
+        con.setRequestProperty("Content-type", "text/xml; charset=utf-8");
+        OutputStream outStream = con.getOutputStream();
+        outStream.write(("<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>"
+                + payload
+                + "</soap:Body></soap:Envelope>").getBytes("UTF-8"));
+        outStream.close();
+        return readResponse(con);
+    }
+
+    private String readResponse(HttpURLConnection con) throws IOException {
+        // Faults come back with a 500 status
+        InputStream inStream = (con.getResponseCode() < HttpURLConnection.HTTP_INTERNAL_ERROR) ? con.getInputStream() : con.getErrorStream();
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        byte[] byteBuf = new byte[256];
+        int len = inStream.read(byteBuf);
+        while (len > -1) {
+            byteStream.write(byteBuf, 0, len);
+            len = inStream.read(byteBuf);
+        }
+        inStream.close();
+        return byteStream.toString();
+    }
+
     private String getRootCause(Throwable t) {
         if(t.getCause() != null){
             return getRootCause(t.getCause());
@@ -300,6 +954,166 @@ public class SOAPGatewayTest extends SwitchYardTestCase {
         }
     }
 
+    private class RelayProvider extends BaseHandler {
+        private volatile Class<?> _requestType;
+        private volatile Class<?> _responseType;
+
+        @Override
+        public void handleMessage(Exchange exchange) throws HandlerException {
+            Object request = exchange.getMessage().getContent();
+            _requestType = request.getClass();
+            try {
+                Object response = newInvoker(WS_PASSTHROUGH_CONSUMER_SERVICE).sendInOut(request).getContent();
+                _responseType = response.getClass();
+                Message message = exchange.createMessage();
+                message.setContent(response);
+                exchange.send(message);
+            } catch (InvocationFaultException ife) {
+                exchange.sendFault(ife.getFaultMessage());
+            }
+        }
+    }
+
+    private static class PayloadProvider extends BaseHandler {
+        private volatile String _operation;
+        private volatile Class<?> _requestType;
+
+        @Override
+        public void handleMessage(Exchange exchange) throws HandlerException {
+            Object request = exchange.getMessage().getContent();
+            _operation = exchange.getContract().getServiceOperation().getName();
+            _requestType = request.getClass();
+            Element name = XMLHelper.getFirstChildElementByName((Element) ((LazyDOMSource) request).getNode(), "arg0");
+            Message message = exchange.createMessage();
+            message.setContent("<test:sayHelloResponse xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\">"
+                    + "<return>Hello " + name.getTextContent() + "</return>"
+                    + "</test:sayHelloResponse>");
+            exchange.send(message);
+        }
+    }
+
+    private static class CountingProvider extends BaseHandler {
+        private final AtomicInteger _active = new AtomicInteger();
+        private final AtomicInteger _peak = new AtomicInteger();
+
+        @Override
+        public void handleMessage(Exchange exchange) throws HandlerException {
+            int active = _active.incrementAndGet();
+            try {
+                int peak = _peak.get();
+                while ((active > peak) && !_peak.compareAndSet(peak, active)) {
+                    peak = _peak.get();
+                }
+                // Hold on to the request long enough for others to pile up
+                Thread.sleep(20);
+            } catch (InterruptedException ie) {
+                throw new HandlerException(ie);
+            } finally {
+                _active.decrementAndGet();
+            }
+            Element name = XMLHelper.getFirstChildElementByName(exchange.getMessage().getContent(Element.class), "arg0");
+            Message message = exchange.createMessage();
+            message.setContent("<test:sayHelloResponse xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\">"
+                    + "<return>Hello " + name.getTextContent() + "</return>"
+                    + "</test:sayHelloResponse>");
+            exchange.send(message);
+        }
+    }
+
+    private static class SilentProvider extends BaseHandler {
+        @Override
+        public void handleMessage(Exchange exchange) throws HandlerException {
+            // Never replies
+        }
+    }
+
+    private static class WarningAppender extends AppenderSkeleton {
+        private final List<String> _messages = new ArrayList<String>();
+
+        @Override
+        protected void append(LoggingEvent event) {
+            if (Level.WARN.equals(event.getLevel())) {
+                _messages.add(event.getRenderedMessage());
+            }
+        }
+
+        @Override
+        public boolean requiresLayout() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class BlockingProvider extends BaseHandler {
+        private final CountDownLatch _started = new CountDownLatch(1);
+        private final CountDownLatch _release = new CountDownLatch(1);
+
+        @Override
+        public void handleMessage(Exchange exchange) throws HandlerException {
+            _started.countDown();
+            try {
+                _release.await();
+            } catch (InterruptedException ie) {
+                throw new HandlerException(ie);
+            }
+            Element name = XMLHelper.getFirstChildElementByName(exchange.getMessage().getContent(Element.class), "arg0");
+            Message message = exchange.createMessage();
+            message.setContent("<test:sayHelloResponse xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\">"
+                    + "<return>Hello " + name.getTextContent() + "</return>"
+                    + "</test:sayHelloResponse>");
+            exchange.send(message);
+        }
+    }
+
+    private static String describe(Map<String, DataHandler> attachments) throws IOException {
+        StringBuilder description = new StringBuilder();
+        for (Map.Entry<String, DataHandler> attachment : attachments.entrySet()) {
+            InputStream content = attachment.getValue().getInputStream();
+            long size = 0;
+            while (content.read() > -1) {
+                size++;
+            }
+            content.close();
+            description.append(attachment.getKey()).append(" of ").append(size).append(" bytes");
+        }
+        return description.toString();
+    }
+
+    private static class AttachmentProvider extends BaseHandler {
+        private final CountDownLatch _received = new CountDownLatch(1);
+        private volatile boolean _spilled;
+        private volatile Map<String, DataHandler> _oneWayAttachments;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void handleMessage(Exchange exchange) throws HandlerException {
+            Map<String, DataHandler> attachments = (Map<String, DataHandler>) exchange.getMessage().getContext().getProperty(SOAPUtil.ATTACHMENTS);
+            if (exchange.getContract().getServiceOperation().getExchangePattern().equals(ExchangePattern.IN_ONLY)) {
+                // Read later, once the request has been answered
+                _oneWayAttachments = attachments;
+                _received.countDown();
+                return;
+            }
+            String toWhom;
+            try {
+                for (DataHandler attachment : attachments.values()) {
+                    _spilled = ((AttachmentDataSource) attachment.getDataSource()).isSpilled();
+                }
+                toWhom = describe(attachments);
+            } catch (IOException ioe) {
+                throw new HandlerException(ioe);
+            }
+            Message message = exchange.createMessage();
+            message.setContent("<test:sayHelloResponse xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\">"
+                    + "<return>Hello " + toWhom + "</return>"
+                    + "</test:sayHelloResponse>");
+            exchange.send(message);
+        }
+    }
+
     private static class HelloWebServiceInterface extends BaseService {
         private static Set<ServiceOperation> _operations = new HashSet<ServiceOperation>(2);
         static {
@@ -0,0 +1,144 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap;
+
+import java.io.ByteArrayInputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.activation.DataHandler;
+import javax.xml.namespace.QName;
+import javax.xml.soap.AttachmentPart;
+import javax.xml.soap.Detail;
+import javax.xml.soap.DetailEntry;
+import javax.xml.soap.MimeHeaders;
+import javax.xml.soap.SOAPFactory;
+import javax.xml.soap.SOAPFault;
+import javax.xml.soap.SOAPMessage;
+import javax.xml.ws.soap.SOAPFaultException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.switchyard.component.soap.util.LazyDOMSource;
+import org.switchyard.component.soap.util.SOAPUtil;
+import org.switchyard.component.soap.util.XMLHelper;
+import org.w3c.dom.Element;
+
+/**
+ * Tests for SOAPUtil.
+ */
+public class SOAPUtilTest {
+    private static final QName SERVER_FAULT_QN = new QName("http://schemas.xmlsoap.org/soap/envelope/", "Server");
+
+    @Test
+    public void generateServerFault() throws Exception {
+        for (String reason : new String[] {"first <failure> & more", "second failure"}) {
+            SOAPFault fault = SOAPUtil.generateFault(new IllegalStateException(reason)).getSOAPBody().getFault();
+            Assert.assertEquals(SERVER_FAULT_QN, fault.getFaultCodeAsQName());
+            Assert.assertEquals(reason, fault.getFaultString());
+            Assert.assertFalse(fault.hasDetail());
+        }
+    }
+
+    @Test
+    public void generateServerFaultWithoutMessage() throws Exception {
+        SOAPFault fault = SOAPUtil.generateFault(new IllegalStateException()).getSOAPBody().getFault();
+        Assert.assertEquals(SERVER_FAULT_QN, fault.getFaultCodeAsQName());
+        Assert.assertNull(fault.getFaultString());
+    }
+
+    @Test
+    public void copySOAPFaultException() throws Exception {
+        QName faultCode = new QName("urn:switchyard-component-soap:test-ws:1.0", "Server.AppError", "app");
+        SOAPFault exFault = SOAPFactory.newInstance().createFault("Invalid name", faultCode);
+        exFault.setFaultActor("urn:actor");
+        Detail exDetail = exFault.addDetail();
+        exDetail.addDetailEntry(new QName("message")).addTextNode("Looks like you did not specify a name!");
+        DetailEntry exEntry = exDetail.addDetailEntry(new QName("urn:switchyard-component-soap:test-ws:1.0", "error", "app"));
+        exEntry.addChildElement("errorcode").addTextNode("1000");
+
+        // Twice, so nothing carries over from the first fault
+        for (int i = 0; i < 2; i++) {
+            SOAPMessage faultMsg = SOAPUtil.generateFault(new SOAPFaultException(exFault));
+            // Serialize, so the fault code prefix must be declared in the message
+            SOAPFault fault = SOAPUtil.SOAP_MESSAGE_FACTORY.createMessage(new MimeHeaders(),
+                    new ByteArrayInputStream(XMLHelper.toString(faultMsg.getSOAPPart()).getBytes("UTF-8"))).getSOAPBody().getFault();
+            Assert.assertEquals(faultCode, fault.getFaultCodeAsQName());
+            Assert.assertEquals("Invalid name", fault.getFaultString());
+            Assert.assertEquals("urn:actor", fault.getFaultActor());
+            Element message = XMLHelper.getFirstChildElementByName(fault.getDetail(), "message");
+            Assert.assertEquals("Looks like you did not specify a name!", message.getTextContent());
+            Element error = XMLHelper.getFirstChildElementByName(fault.getDetail(), "app:error");
+            Assert.assertEquals("1000", XMLHelper.getFirstChildElementByName(error, "errorcode").getTextContent());
+        }
+    }
+
+    @Test
+    public void routeAndStripEnvelope() throws Exception {
+        String envelope = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                        + "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+                        + "<soap:Header><test:trace xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\"><test:Body/></test:trace></soap:Header>"
+                        + "<soap:Body><test:sayHello xmlns:test=\"urn:switchyard-component-soap:test-ws:1.0\"><arg0>M\u00e4gesh</arg0></test:sayHello></soap:Body>"
+                        + "</soap:Envelope>";
+        LazyDOMSource source = new LazyDOMSource(envelope.getBytes("UTF-8"));
+        QName payloadQName = new QName("urn:switchyard-component-soap:test-ws:1.0", "sayHello");
+
+        Assert.assertTrue(SOAPUtil.isEnvelope(source));
+        Assert.assertEquals(payloadQName, SOAPUtil.getPayloadQName(source.getInputStream()));
+
+        LazyDOMSource stripped = SOAPUtil.removeHeader(source);
+        Assert.assertTrue(SOAPUtil.isEnvelope(stripped));
+        Assert.assertEquals(payloadQName, SOAPUtil.getPayloadQName(stripped.getInputStream()));
+        Element root = (Element) stripped.getNode();
+        Assert.assertEquals(0, root.getElementsByTagNameNS("http://schemas.xmlsoap.org/soap/envelope/", "Header").getLength());
+        Assert.assertEquals("M\u00e4gesh", root.getTextContent());
+
+        String empty = "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body/></soap:Envelope>";
+        Assert.assertNull(SOAPUtil.getPayloadQName(new ByteArrayInputStream(empty.getBytes("UTF-8"))));
+        Assert.assertFalse(SOAPUtil.isEnvelope(new LazyDOMSource("<test:sayHello xmlns:test=\"urn:test\"/>".getBytes("UTF-8"))));
+    }
+
+    @Test
+    public void generateRetryFault() throws Exception {
+        SOAPMessage faultMsg = SOAPUtil.generateRetryFault("Busy", 5);
+        SOAPFault fault = faultMsg.getSOAPBody().getFault();
+        Assert.assertEquals(SERVER_FAULT_QN, fault.getFaultCodeAsQName());
+        Assert.assertEquals("Busy", fault.getFaultString());
+        DetailEntry retryAfter = (DetailEntry) fault.getDetail().getDetailEntries().next();
+        Assert.assertEquals(SOAPUtil.RETRY_AFTER_QN, retryAfter.getElementQName());
+        Assert.assertEquals("5", retryAfter.getValue());
+        Assert.assertEquals("5", faultMsg.getMimeHeaders().getHeader("Retry-After")[0]);
+    }
+
+    @Test
+    public void addAndGetAttachments() throws Exception {
+        SOAPMessage message = SOAPUtil.SOAP_MESSAGE_FACTORY.createMessage();
+        Assert.assertNull(SOAPUtil.getAttachments(message));
+
+        Map<String, DataHandler> attachments = new LinkedHashMap<String, DataHandler>();
+        attachments.put("doc@test", new DataHandler("content", "text/plain"));
+        SOAPUtil.addAttachments(message, attachments);
+        Assert.assertEquals("<doc@test>", ((AttachmentPart) message.getAttachments().next()).getContentId());
+
+        Map<String, DataHandler> read = SOAPUtil.getAttachments(message);
+        Assert.assertEquals(attachments.keySet(), read.keySet());
+        Assert.assertEquals("content", read.get("doc@test").getContent());
+    }
+}
@@ -19,7 +19,13 @@
 
 package org.switchyard.component.soap;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 import javax.xml.namespace.QName;
+import javax.wsdl.Definition;
 import javax.wsdl.Port;
 import javax.wsdl.Service;
 import javax.wsdl.WSDLException;
@@ -86,6 +92,38 @@ public class WSDLUtilTest {
         Assert.assertEquals(port.getName(), "HelloWebServicePortFrench");
     }
     
+    @Test
+    public void cachedUntilModified() throws Exception {
+        File wsdlFile = File.createTempFile("HelloWebService", ".wsdl");
+        wsdlFile.deleteOnExit();
+        copy("MultiplePortService.wsdl", wsdlFile);
+        String location = wsdlFile.getAbsolutePath();
+
+        Definition definition = WSDLUtil.readWSDL(location);
+        Assert.assertSame(definition, WSDLUtil.readWSDL(location));
+
+        Assert.assertTrue(wsdlFile.setLastModified(wsdlFile.lastModified() - 10000));
+        Definition modified = WSDLUtil.readWSDL(location);
+        Assert.assertNotSame(definition, modified);
+        Assert.assertSame(modified, WSDLUtil.readWSDL(location));
+    }
+
+    private void copy(String resource, File file) throws Exception {
+        InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(resource);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            byte[] buffer = new byte[1024];
+            int len = in.read(buffer);
+            while (len > -1) {
+                out.write(buffer, 0, len);
+                len = in.read(buffer);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+
     @Test(expected=WSDLException.class)
     public void nonExistentService() throws Exception {
         WSDLUtil.getService("MultiplePortService.wsdl", new PortName("NonexistentWebService:"));
@@ -0,0 +1,84 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.switchyard.component.soap.util.XMLHelper;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+/**
+ * Tests for XMLHelper.
+ */
+public class XMLHelperTest {
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 200;
+
+    @Test
+    public void concurrentParseSerialiseAndCompare() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < THREADS; i++) {
+                final int id = i;
+                results.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        for (int j = 0; j < ITERATIONS; j++) {
+                            String xml = "<test:sayHello xmlns:test=\"urn:test\"><arg0>" + id + "-" + j + "</arg0></test:sayHello>";
+                            Document doc = XMLHelper.getDocument(new InputSource(new StringReader(xml)));
+                            if (!(id + "-" + j).equals(doc.getDocumentElement().getTextContent())) {
+                                return Boolean.FALSE;
+                            }
+                            if (!XMLHelper.compareXMLContent(doc.getDocumentElement(),
+                                    XMLHelper.getDocument(new InputSource(new StringReader(XMLHelper.toString(doc)))))) {
+                                return Boolean.FALSE;
+                            }
+                            String other = "<t:sayHello xmlns:t=\"urn:test\"><arg0>" + id + "-" + j + "</arg0></t:sayHello>";
+                            if (!XMLHelper.compareXMLContent(new InputSource(new StringReader(xml)), new InputSource(new StringReader(other)))) {
+                                return Boolean.FALSE;
+                            }
+                        }
+                        return Boolean.TRUE;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                Assert.assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void compareDetectsDifference() throws Exception {
+        Assert.assertFalse(XMLHelper.compareXMLContent(new InputSource(new StringReader("<a><b>1</b></a>")),
+                new InputSource(new StringReader("<a><b>2</b></a>"))));
+    }
+}
@@ -0,0 +1,210 @@
+/* 
+ * JBoss, Home of Professional Open Source 
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved. 
+ * See the copyright.txt in the distribution for a 
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use, 
+ * modify, copy, or redistribute it subject to the terms and conditions 
+ * of the GNU Lesser General Public License, v. 2.1. 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details. 
+ * You should have received a copy of the GNU Lesser General Public License, 
+ * v.2.1 along with this distribution; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ */
+
+package org.switchyard.component.soap.deploy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.namespace.QName;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.switchyard.ServiceReference;
+import org.switchyard.component.soap.WebServicePublishException;
+import org.switchyard.component.soap.config.model.SOAPBindingModel;
+import org.switchyard.config.model.ModelResource;
+import org.switchyard.config.model.composite.CompositeModel;
+import org.switchyard.config.model.composite.CompositeServiceModel;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests for the background preparation of gateways by SOAPActivator.
+ */
+public class SOAPActivatorTest {
+    private static final QName SERVICE_ONE = new QName("one");
+    private static final QName SERVICE_TWO = new QName("two");
+
+    private SOAPActivator _activator;
+    private WSDLHandler _wsdls;
+    private HttpServer _server;
+    private ExecutorService _serverExecutor;
+    private String _baseURL;
+
+    @Before
+    public void setUp() throws Exception {
+        String host = System.getProperty("org.switchyard.test.soap.host", "localhost");
+        _wsdls = new WSDLHandler();
+        _serverExecutor = Executors.newCachedThreadPool();
+        _server = HttpServer.create(new InetSocketAddress(host, 0), 0);
+        _server.createContext("/", _wsdls);
+        _server.setExecutor(_serverExecutor);
+        _server.start();
+        _baseURL = "http://" + host + ":" + _server.getAddress().getPort() + "/";
+        _activator = new SOAPActivator();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        _wsdls._release.countDown();
+        _activator.destroy(newServiceReference(SERVICE_ONE));
+        _activator.destroy(newServiceReference(SERVICE_TWO));
+        _server.stop(0);
+        _serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void prepareInParallel() throws Exception {
+        _wsdls._arrived = new CountDownLatch(2);
+
+        _activator.init(SERVICE_ONE, newServiceModel("one?wsdl"));
+        _activator.init(SERVICE_TWO, newServiceModel("two?wsdl"));
+
+        // Neither WSDL is served until both have been asked for
+        Assert.assertTrue(_wsdls._arrived.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(2, _wsdls._requests.get());
+    }
+
+    @Test
+    public void startAfterFailedPreparation() throws Exception {
+        _wsdls._status = HttpURLConnection.HTTP_NOT_FOUND;
+        _wsdls._release.countDown();
+
+        _activator.init(SERVICE_ONE, newServiceModel("missing?wsdl"));
+        Assert.assertTrue(_wsdls._arrived.await(30, TimeUnit.SECONDS));
+
+        // Every start reads the WSDL again and reports the same error
+        for (int i = 2; i <= 3; i++) {
+            try {
+                _activator.start(newServiceReference(SERVICE_ONE));
+                Assert.fail("Expected RuntimeException");
+            } catch (RuntimeException re) {
+                Assert.assertEquals("Failed to start inbound gateway for service " + SERVICE_ONE, re.getMessage());
+                Assert.assertTrue(re.getCause() instanceof WebServicePublishException);
+            }
+            Assert.assertEquals(i, _wsdls._requests.get());
+        }
+    }
+
+    @Test
+    public void destroyCancelsPreparation() throws Exception {
+        _activator.init(SERVICE_ONE, newServiceModel("pending?wsdl"));
+        Assert.assertTrue(_wsdls._arrived.await(30, TimeUnit.SECONDS));
+
+        _activator.destroy(newServiceReference(SERVICE_ONE));
+
+        // Start no longer waits for the WSDL, which is still not served
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Void> start = executor.submit(new Callable<Void>() {
+                public Void call() {
+                    _activator.start(newServiceReference(SERVICE_ONE));
+                    return null;
+                }
+            });
+            start.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(1, _wsdls._requests.get());
+    }
+
+    private CompositeServiceModel newServiceModel(String wsdl) throws IOException {
+        CompositeModel composite = new ModelResource<CompositeModel>().pull("/HelloSwitchYard.xml");
+        CompositeServiceModel service = composite.getServices().get(0);
+        ((SOAPBindingModel) service.getBindings().get(0)).setWsdl(_baseURL + wsdl);
+        return service;
+    }
+
+    private static ServiceReference newServiceReference(final QName name) {
+        return (ServiceReference) Proxy.newProxyInstance(SOAPActivatorTest.class.getClassLoader(),
+                new Class<?>[]{ServiceReference.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return method.getName().equals("getName") ? name : null;
+            }
+        });
+    }
+
+    /**
+     * Serves the test WSDL once released, counting the requests for it.
+     */
+    private static class WSDLHandler implements HttpHandler {
+        private final AtomicInteger _requests = new AtomicInteger();
+        private final CountDownLatch _release = new CountDownLatch(1);
+        private volatile CountDownLatch _arrived = new CountDownLatch(1);
+        private volatile int _status = HttpURLConnection.HTTP_OK;
+
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                _requests.incrementAndGet();
+                _arrived.countDown();
+                if (!_release.await(30, TimeUnit.SECONDS)) {
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_UNAVAILABLE, -1);
+                } else if (_status != HttpURLConnection.HTTP_OK) {
+                    exchange.sendResponseHeaders(_status, -1);
+                } else {
+                    byte[] wsdl = read("/HelloWebService.wsdl");
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, wsdl.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(wsdl);
+                    out.close();
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private static byte[] read(String resource) throws IOException {
+            InputStream in = SOAPActivatorTest.class.getResourceAsStream(resource);
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int len = in.read(buffer);
+                while (len > -1) {
+                    out.write(buffer, 0, len);
+                    len = in.read(buffer);
+                }
+                return out.toByteArray();
+            } finally {
+                in.close();
+            }
+        }
+    }
+}